@@ -0,0 +1,101 @@
+package tech.geekcity.open.geek.tools.benchmark;
+
+import tech.geekcity.open.geek.tools.tree.LinkableDataType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @author ben.wangz
+ */
+public class BenchmarkData implements LinkableDataType {
+    private static final String ROOT_PARENT_ID = "";
+    private final String id;
+    private final String parentId;
+
+    public enum Shape {
+        /**
+         * a chain, every node is the parent of the next one
+         */
+        DEEP,
+        /**
+         * a star, every node is a child of the first one
+         */
+        WIDE,
+        /**
+         * a complete binary tree
+         */
+        BALANCED
+    }
+
+    public enum Order {
+        /**
+         * every parent is added before its children
+         */
+        PARENT_FIRST,
+        /**
+         * every child is added before its parent
+         */
+        CHILD_FIRST,
+        RANDOM
+    }
+
+    public BenchmarkData(String id, String parentId) {
+        this.id = id;
+        this.parentId = parentId;
+    }
+
+    @Override
+    public String id() {
+        return id;
+    }
+
+    @Override
+    public String parentId() {
+        return parentId;
+    }
+
+    /**
+     * @param shape shape of the tree
+     * @param order insertion order
+     * @param size  number of nodes
+     * @return data of one tree in the insertion order
+     */
+    public static List<BenchmarkData> generate(Shape shape, Order order, int size) {
+        List<BenchmarkData> dataList = new ArrayList<>(size);
+        for (int index = 0; index < size; index++) {
+            dataList.add(new BenchmarkData(
+                    String.valueOf(index),
+                    0 == index ? ROOT_PARENT_ID : String.valueOf(parentIndex(shape, index))));
+        }
+        switch (order) {
+            case PARENT_FIRST:
+                break;
+            case CHILD_FIRST:
+                Collections.reverse(dataList);
+                break;
+            case RANDOM:
+                // fixed seed, so every fork measures the same input
+                Collections.shuffle(dataList, new Random(0));
+                break;
+            default:
+                throw new IllegalArgumentException(String.format("unknown order(%s)", order));
+        }
+        return dataList;
+    }
+
+    private static int parentIndex(Shape shape, int index) {
+        switch (shape) {
+            case DEEP:
+                return index - 1;
+            case WIDE:
+                return 0;
+            case BALANCED:
+                return (index - 1) / 2;
+            default:
+                throw new IllegalArgumentException(String.format("unknown shape(%s)", shape));
+        }
+    }
+}
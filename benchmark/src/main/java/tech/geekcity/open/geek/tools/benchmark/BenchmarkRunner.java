@@ -0,0 +1,28 @@
+package tech.geekcity.open.geek.tools.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>
+ * runs the benchmarks matching the first argument (all of them by default) with the gc profiler,
+ * which reports the allocation rate along with the time
+ * </p>
+ * <p>
+ * the same as {@code java -jar benchmarks.jar <regexp> -prof gc}
+ * </p>
+ *
+ * @author ben.wangz
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : BenchmarkRunner.class.getPackage().getName() + ".*")
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,75 @@
+package tech.geekcity.open.geek.tools.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.geekcity.open.geek.tools.tree.ConcurrentTreeConstructor;
+import tech.geekcity.open.geek.tools.tree.LinkableDataType;
+import tech.geekcity.open.geek.tools.tree.Node;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * cost of several producers adding one tree to a {@link ConcurrentTreeConstructor} and linking it
+ *
+ * @author ben.wangz
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ConcurrentTreeConstructorBenchmark {
+    @Param({"1", "2", "4", "8"})
+    private int producerCount;
+    @Param({"100000", "1000000"})
+    private int size;
+    private List<BenchmarkData> dataList;
+    private ExecutorService executorService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataList = BenchmarkData.generate(BenchmarkData.Shape.BALANCED, BenchmarkData.Order.RANDOM, size);
+        executorService = Executors.newFixedThreadPool(producerCount);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executorService.shutdown();
+    }
+
+    @Benchmark
+    public List<Node<BenchmarkData>> addAndLink() throws InterruptedException, ExecutionException {
+        ConcurrentTreeConstructor<BenchmarkData> concurrentTreeConstructor
+                = new ConcurrentTreeConstructor<>(LinkableDataType.nodeComparator(), producerCount);
+        List<Future<?>> futureList = IntStream.range(0, producerCount)
+                .mapToObj(producer -> executorService.submit(() -> {
+                    for (int index = producer; index < dataList.size(); index += producerCount) {
+                        concurrentTreeConstructor.add(new Node<>(dataList.get(index)));
+                    }
+                }))
+                .collect(Collectors.toList());
+        for (Future<?> future : futureList) {
+            future.get();
+        }
+        return concurrentTreeConstructor.treeList();
+    }
+}
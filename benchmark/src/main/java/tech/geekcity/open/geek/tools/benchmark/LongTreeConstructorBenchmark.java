@@ -0,0 +1,89 @@
+package tech.geekcity.open.geek.tools.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.geekcity.open.geek.tools.tree.LongLinkableDataType;
+import tech.geekcity.open.geek.tools.tree.LongTreeConstructor;
+import tech.geekcity.open.geek.tools.tree.Node;
+import tech.geekcity.open.geek.tools.tree.TreeConstructor;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * <p>
+ * cost of building one tree in bulk from string ids by {@link TreeConstructor#build(java.util.Collection)}
+ * and from the same ids as longs by {@link LongTreeConstructor#build(java.util.Collection)},
+ * run with {@code -prof gc} to compare the allocation as well
+ * </p>
+ *
+ * @author ben.wangz
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LongTreeConstructorBenchmark {
+    @Param({"DEEP", "WIDE", "BALANCED"})
+    private BenchmarkData.Shape shape;
+    @Param({"PARENT_FIRST", "RANDOM"})
+    private BenchmarkData.Order order;
+    @Param({"100000", "1000000"})
+    private int size;
+    private List<BenchmarkData> dataList;
+    private List<LongData> longDataList;
+
+    public static class LongData implements LongLinkableDataType {
+        private final long id;
+        private final long parentId;
+
+        public LongData(long id, long parentId) {
+            this.id = id;
+            this.parentId = parentId;
+        }
+
+        @Override
+        public long id() {
+            return id;
+        }
+
+        @Override
+        public long parentId() {
+            return parentId;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataList = BenchmarkData.generate(shape, order, size);
+        longDataList = dataList.stream()
+                .map(data -> new LongData(
+                        Long.parseLong(data.id()),
+                        data.parentId().isEmpty()
+                                ? LongLinkableDataType.NO_PARENT : Long.parseLong(data.parentId())))
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Node<BenchmarkData>> build() {
+        return TreeConstructor.build(dataList);
+    }
+
+    @Benchmark
+    public List<Node<LongData>> buildLong() {
+        return LongTreeConstructor.build(longDataList);
+    }
+}
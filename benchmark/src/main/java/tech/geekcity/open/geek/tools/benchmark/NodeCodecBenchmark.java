@@ -0,0 +1,91 @@
+package tech.geekcity.open.geek.tools.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.geekcity.open.geek.tools.tree.Node;
+import tech.geekcity.open.geek.tools.tree.NodeCodec;
+import tech.geekcity.open.geek.tools.tree.TreeConstructor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * cost of writing and reading a balanced tree by {@link NodeCodec.TreeList} and by the default serialization,
+ * which recurses as deep as the tree, so the shape is limited to the balanced one
+ * </p>
+ *
+ * @author ben.wangz
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class NodeCodecBenchmark {
+    @Param({"100000", "1000000"})
+    private int size;
+    private ArrayList<Node<BenchmarkData>> rootList;
+    private byte[] codecBytes;
+    private byte[] defaultBytes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        rootList = new ArrayList<>(TreeConstructor.build(
+                BenchmarkData.generate(BenchmarkData.Shape.BALANCED, BenchmarkData.Order.PARENT_FIRST, size)));
+        codecBytes = serialize(new NodeCodec.TreeList<>(rootList));
+        defaultBytes = serialize(rootList);
+    }
+
+    @Benchmark
+    public byte[] writeCodec() throws IOException {
+        return serialize(new NodeCodec.TreeList<>(rootList));
+    }
+
+    @Benchmark
+    public Object readCodec() throws IOException, ClassNotFoundException {
+        return deserialize(codecBytes);
+    }
+
+    @Benchmark
+    public byte[] writeDefault() throws IOException {
+        return serialize(rootList);
+    }
+
+    @Benchmark
+    public Object readDefault() throws IOException, ClassNotFoundException {
+        return deserialize(defaultBytes);
+    }
+
+    private static byte[] serialize(Serializable object) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream)) {
+            objectOutputStream.writeObject(object);
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return objectInputStream.readObject();
+        }
+    }
+}
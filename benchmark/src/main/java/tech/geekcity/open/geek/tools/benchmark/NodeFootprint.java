@@ -0,0 +1,77 @@
+package tech.geekcity.open.geek.tools.benchmark;
+
+import org.openjdk.jol.info.ClassLayout;
+import org.openjdk.jol.info.GraphLayout;
+import tech.geekcity.open.geek.tools.tree.Node;
+import tech.geekcity.open.geek.tools.tree.TreeConstructor;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * prints the heap footprint per node of the trees, excluding the payloads,
+ * which is measured by JOL walking the object graph rather than timed by JMH
+ * </p>
+ * <p>
+ * the trees are built twice, once with {@link Node} and once with {@link ListNode},
+ * which keeps the former layout of an {@link ArrayList} of children created with every node.
+ * run it with {@code java -cp benchmarks.jar tech.geekcity.open.geek.tools.benchmark.NodeFootprint [size]}
+ * </p>
+ *
+ * @author ben.wangz
+ */
+public class NodeFootprint {
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        System.out.println(ClassLayout.parseClass(Node.class).toPrintable());
+        System.out.println(ClassLayout.parseClass(ListNode.class).toPrintable());
+        for (BenchmarkData.Shape shape : BenchmarkData.Shape.values()) {
+            List<BenchmarkData> dataList
+                    = BenchmarkData.generate(shape, BenchmarkData.Order.PARENT_FIRST, size);
+            GraphLayout payloadLayout = GraphLayout.parseInstance(dataList.toArray());
+            long nodeFootprint = GraphLayout.parseInstance(TreeConstructor.build(dataList).toArray())
+                    .subtract(payloadLayout)
+                    .totalSize();
+            long listNodeFootprint = GraphLayout.parseInstance(ListNode.build(dataList).toArray())
+                    .subtract(payloadLayout)
+                    .totalSize();
+            System.out.println(String.format(
+                    "shape(%s), size(%s): Node %.1f bytes per node, ListNode %.1f bytes per node",
+                    shape, size, (double) nodeFootprint / size, (double) listNodeFootprint / size));
+        }
+    }
+
+    /**
+     * the former layout of {@link Node}
+     */
+    private static class ListNode<DataType extends Serializable> implements Serializable {
+        private final DataType data;
+        private ListNode<DataType> parent;
+        private final List<ListNode<DataType>> children = new ArrayList<>();
+
+        private ListNode(DataType data) {
+            this.data = data;
+        }
+
+        private static List<ListNode<BenchmarkData>> build(List<BenchmarkData> dataList) {
+            Map<String, ListNode<BenchmarkData>> nodeIdKeyed = new HashMap<>();
+            dataList.forEach(data -> nodeIdKeyed.put(data.id(), new ListNode<>(data)));
+            List<ListNode<BenchmarkData>> rootList = new ArrayList<>();
+            for (BenchmarkData data : dataList) {
+                ListNode<BenchmarkData> node = nodeIdKeyed.get(data.id());
+                ListNode<BenchmarkData> parent = nodeIdKeyed.get(data.parentId());
+                if (null == parent) {
+                    rootList.add(node);
+                } else {
+                    parent.children.add(node);
+                    node.parent = parent;
+                }
+            }
+            return rootList;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package tech.geekcity.open.geek.tools.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.geekcity.open.geek.tools.tree.LinkableDataType;
+import tech.geekcity.open.geek.tools.tree.Node;
+import tech.geekcity.open.geek.tools.tree.TreeConstructor;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * cost of building one tree by {@link TreeConstructor#add(Node, boolean)} with the linkable data type optimization,
+ * and of {@link TreeConstructor#treeList()} after a change
+ * </p>
+ * <p>
+ * the change and the {@link TreeConstructor#treeList()} after it are measured as one operation,
+ * since a single call of {@link TreeConstructor#treeList()} is too short to time with a per invocation setup;
+ * removing and adding back the same leaf leaves the tree as it was, so every operation starts from the same state
+ * </p>
+ * <p>
+ * the largest sizes need a few GB of heap, such as {@code -jvmArgsAppend -Xmx8g}
+ * </p>
+ *
+ * @author ben.wangz
+ * @see TreeConstructorFallbackBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TreeConstructorBenchmark {
+    @Param({"DEEP", "WIDE", "BALANCED"})
+    private BenchmarkData.Shape shape;
+    @Param({"PARENT_FIRST", "CHILD_FIRST", "RANDOM"})
+    private BenchmarkData.Order order;
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    private int size;
+    private List<BenchmarkData> dataList;
+
+    /**
+     * a tree built before, and a leaf of it to remove and add back
+     */
+    @State(Scope.Benchmark)
+    public static class Built {
+        private TreeConstructor<BenchmarkData> treeConstructor;
+        private BenchmarkData leafData;
+
+        @Setup(Level.Trial)
+        public void setUp(TreeConstructorBenchmark benchmark) {
+            treeConstructor = add(benchmark.dataList, true);
+            // the last one is a leaf in every shape
+            String leafId = String.valueOf(benchmark.size - 1);
+            leafData = benchmark.dataList.stream()
+                    .filter(data -> data.id().equals(leafId))
+                    .findFirst()
+                    .orElseThrow(IllegalStateException::new);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataList = BenchmarkData.generate(shape, order, size);
+    }
+
+    @Benchmark
+    public TreeConstructor<BenchmarkData> add() {
+        return add(dataList, true);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Node<BenchmarkData>> changeLeafAndTreeList(Built built) {
+        built.treeConstructor.remove(built.leafData.id());
+        built.treeConstructor.add(new Node<>(built.leafData), true);
+        return built.treeConstructor.treeList();
+    }
+
+    static TreeConstructor<BenchmarkData> add(List<BenchmarkData> dataList, boolean linkableDataTypeOptimize) {
+        TreeConstructor<BenchmarkData> treeConstructor = new TreeConstructor<>(LinkableDataType.nodeComparator());
+        for (BenchmarkData data : dataList) {
+            treeConstructor.add(new Node<>(data), linkableDataTypeOptimize);
+        }
+        return treeConstructor;
+    }
+}
@@ -0,0 +1,53 @@
+package tech.geekcity.open.geek.tools.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.geekcity.open.geek.tools.tree.Node;
+import tech.geekcity.open.geek.tools.tree.TreeConstructor;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * cost of building one tree by {@link TreeConstructor#add(Node, boolean)} without the linkable data type optimization,
+ * which compares every node added before, so it is limited to the smaller sizes of {@link TreeConstructorBenchmark}
+ * </p>
+ *
+ * @author ben.wangz
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TreeConstructorFallbackBenchmark {
+    @Param({"DEEP", "WIDE", "BALANCED"})
+    private BenchmarkData.Shape shape;
+    @Param({"PARENT_FIRST", "CHILD_FIRST", "RANDOM"})
+    private BenchmarkData.Order order;
+    @Param({"1000", "10000"})
+    private int size;
+    private List<BenchmarkData> dataList;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataList = BenchmarkData.generate(shape, order, size);
+    }
+
+    @Benchmark
+    public TreeConstructor<BenchmarkData> add() {
+        return TreeConstructorBenchmark.add(dataList, false);
+    }
+}
@@ -0,0 +1,170 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * ancestry index over built trees, answering ancestor queries without walking the parents
+ * </p>
+ * <p>
+ * nodes are numbered in pre-order by a {@link TreeSnapshot},
+ * so {@link #isAncestor(Node, Node)} compares its subtree ranges in O(1);
+ * on top of the parents and depths of the snapshot, each node keeps a jump pointer (Myers' skew-binary jump pointers),
+ * so {@link #kthAncestor(Node, int)} and {@link #lowestCommonAncestor(Node, Node)} cost O(log N)
+ * with O(N) space and O(N) rebuild cost
+ * </p>
+ * <p>
+ * the index is a snapshot, it should be rebuilt after the trees are modified
+ * </p>
+ *
+ * @author ben.wangz
+ */
+public class AncestryIndex<DataType extends Serializable> {
+    private final TreeSnapshot<DataType> treeSnapshot;
+    private final Map<Node<DataType>, Integer> indexOf;
+    private final List<Node<DataType>> nodeList;
+    private final int[] jumpArray;
+
+    private AncestryIndex(List<Node<DataType>> rootList) {
+        // the parents, depths and subtree ranges come from the snapshot, numbered in the same pre-order
+        treeSnapshot = TreeSnapshot.freeze(rootList);
+        indexOf = new IdentityHashMap<>();
+        nodeList = new ArrayList<>(treeSnapshot.size());
+        for (Node<DataType> root : rootList) {
+            for (Iterator<Node<DataType>> iterator = root.preOrderIterator(); iterator.hasNext(); ) {
+                Node<DataType> node = iterator.next();
+                indexOf.put(node, nodeList.size());
+                nodeList.add(node);
+            }
+        }
+        int size = nodeList.size();
+        jumpArray = new int[size];
+        for (int index = 0; index < size; index++) {
+            int parent = treeSnapshot.parent(index);
+            if (TreeSnapshot.NONE == parent) {
+                jumpArray[index] = index;
+                continue;
+            }
+            int jump = jumpArray[parent];
+            jumpArray[index] = treeSnapshot.depth(parent) - treeSnapshot.depth(jump)
+                    == treeSnapshot.depth(jump) - treeSnapshot.depth(jumpArray[jump])
+                    ? jumpArray[jump]
+                    : parent;
+        }
+    }
+
+    /**
+     * @param root       root of the tree to index, usually one of {@link TreeConstructor#treeList()}
+     * @param <DataType> type of data
+     * @return the ancestry index
+     */
+    public static <DataType extends Serializable> AncestryIndex<DataType> of(Node<DataType> root) {
+        return new AncestryIndex<>(Collections.singletonList(root));
+    }
+
+    /**
+     * @param rootList   roots of the trees to index, usually {@link TreeConstructor#treeList()}
+     * @param <DataType> type of data
+     * @return the ancestry index
+     */
+    public static <DataType extends Serializable> AncestryIndex<DataType> of(List<Node<DataType>> rootList) {
+        return new AncestryIndex<>(rootList);
+    }
+
+    /**
+     * @return number of nodes indexed
+     */
+    public int size() {
+        return nodeList.size();
+    }
+
+    /**
+     * O(1)
+     *
+     * @param ancestor   the ancestor node to test
+     * @param descendant the descendant node to test
+     * @return true if {@code ancestor} is a proper ancestor of {@code descendant}
+     */
+    public boolean isAncestor(Node<DataType> ancestor, Node<DataType> descendant) {
+        int ancestorIndex = index(ancestor);
+        int descendantIndex = index(descendant);
+        return ancestorIndex != descendantIndex && isAncestorOrSelf(ancestorIndex, descendantIndex);
+    }
+
+    /**
+     * @param node any node indexed
+     * @return depth of the node, which is 0 for a root
+     */
+    public int depth(Node<DataType> node) {
+        return treeSnapshot.depth(index(node));
+    }
+
+    /**
+     * O(log k)
+     *
+     * @param node any node indexed
+     * @param k    0 for the node itself, 1 for its parent, and so on
+     * @return the k-th ancestor, or null if the tree is not that deep
+     */
+    public Node<DataType> kthAncestor(Node<DataType> node, int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException(String.format("k(%s) should not be negative", k));
+        }
+        int current = index(node);
+        int targetDepth = treeSnapshot.depth(current) - k;
+        if (targetDepth < 0) {
+            return null;
+        }
+        while (treeSnapshot.depth(current) > targetDepth) {
+            current = treeSnapshot.depth(jumpArray[current]) >= targetDepth
+                    ? jumpArray[current]
+                    : treeSnapshot.parent(current);
+        }
+        return nodeList.get(current);
+    }
+
+    /**
+     * O(log N)
+     *
+     * @param node        any node indexed
+     * @param anotherNode another node indexed
+     * @return the lowest common ancestor, which may be one of the nodes given;
+     * or null if they are in different trees
+     */
+    public Node<DataType> lowestCommonAncestor(Node<DataType> node, Node<DataType> anotherNode) {
+        int current = index(node);
+        int another = index(anotherNode);
+        // climb from current until it covers another, preferring the jump pointers
+        while (!isAncestorOrSelf(current, another)) {
+            int jump = jumpArray[current];
+            // the jump pointer of a root points to itself
+            if (jump != current && !isAncestorOrSelf(jump, another)) {
+                current = jump;
+            } else {
+                current = treeSnapshot.parent(current);
+            }
+            if (TreeSnapshot.NONE == current) {
+                return null;
+            }
+        }
+        return nodeList.get(current);
+    }
+
+    private boolean isAncestorOrSelf(int ancestor, int descendant) {
+        return ancestor == descendant || treeSnapshot.isAncestor(ancestor, descendant);
+    }
+
+    private int index(Node<DataType> node) {
+        Integer index = indexOf.get(node);
+        if (null == index) {
+            throw new IllegalArgumentException(String.format("node(%s) not indexed", node.data()));
+        }
+        return index;
+    }
+}
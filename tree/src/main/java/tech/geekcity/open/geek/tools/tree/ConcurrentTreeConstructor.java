@@ -0,0 +1,195 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * <p>
+ * thread safe variant of {@link TreeConstructor} for several producers
+ * </p>
+ * <p>
+ * {@link #add(Node)} appends the node to a lock-free queue of the stripe which the producer thread belongs to.
+ * the nodes are linked by a single {@link TreeConstructor}, one thread at a time:
+ * a producer finding the lock free links a batch of the queued nodes of all the producers,
+ * while the others go on without waiting for it, and {@link #treeList()} links whatever is left,
+ * so the linking overlaps with the production instead of piling up for the reader
+ * </p>
+ * <p>
+ * {@link #treeList()} publishes a snapshot, which is reused until some nodes are linked,
+ * and then only the trees changed since the last snapshot are copied again
+ * </p>
+ *
+ * @author ben.wangz
+ */
+public class ConcurrentTreeConstructor<DataType extends Serializable> implements Serializable {
+    // nodes a producer links from one stripe at most each time it takes the lock
+    private static final int DRAIN_BATCH_SIZE = 256;
+    private final List<Queue<Node<DataType>>> stripeList;
+    private final TreeConstructor<DataType> treeConstructor;
+    private final ReentrantLock lock = new ReentrantLock();
+    // the fields below are guarded by the lock
+    // format source root -> copy of its tree in the last snapshot
+    private final Map<Node<DataType>, Node<DataType>> copyOf = new IdentityHashMap<>();
+    // roots of the trees which got nodes since the last snapshot
+    private final Set<Node<DataType>> changedRootSet = Collections.newSetFromMap(new IdentityHashMap<>());
+    // null if any tree changed since the last snapshot
+    private List<Node<DataType>> snapshot = Collections.emptyList();
+
+    public ConcurrentTreeConstructor(TreeConstructor.NodeComparator<DataType> nodeComparator) {
+        this(nodeComparator, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param nodeComparator node comparator
+     * @param stripeCount    number of queues to spread producers on, usually the number of producers
+     */
+    public ConcurrentTreeConstructor(TreeConstructor.NodeComparator<DataType> nodeComparator, int stripeCount) {
+        if (stripeCount <= 0) {
+            throw new IllegalArgumentException(String.format("stripeCount(%s) should be positive", stripeCount));
+        }
+        this.stripeList = IntStream.range(0, stripeCount)
+                .mapToObj(index -> new ConcurrentLinkedQueue<Node<DataType>>())
+                .collect(Collectors.toList());
+        this.treeConstructor = new TreeConstructor<>(nodeComparator);
+    }
+
+    /**
+     * never blocks, can be called by any number of threads concurrently
+     *
+     * @param nodeToAdd node to add, which should not be touched by the producer any more
+     * @see TreeConstructor#add(Node)
+     */
+    public void add(Node<DataType> nodeToAdd) {
+        stripeList.get((int) (Thread.currentThread().getId() % stripeList.size()))
+                .add(nodeToAdd);
+        if (!lock.isLocked() && lock.tryLock()) {
+            try {
+                drain(DRAIN_BATCH_SIZE);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * link all the nodes added before and take a snapshot of the trees
+     * </p>
+     * <p>
+     * the snapshot is made of new nodes sharing data with the nodes added,
+     * so it stays consistent while the producers keep adding.
+     * the same snapshot is returned until any node is linked,
+     * and the copies of the trees unchanged are shared by the snapshots after it,
+     * so it costs O(number of roots + size of the trees changed) at most, and should not be modified
+     * </p>
+     *
+     * @return unmodifiable root node list of the snapshot
+     */
+    public List<Node<DataType>> treeList() {
+        lock.lock();
+        try {
+            drain(Integer.MAX_VALUE);
+            if (null == snapshot) {
+                snapshot = takeSnapshot();
+            }
+            return snapshot;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            stripeList.forEach(Queue::clear);
+            treeConstructor.clear();
+            copyOf.clear();
+            changedRootSet.clear();
+            snapshot = Collections.emptyList();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void drain(int batchSize) {
+        for (Queue<Node<DataType>> stripe : stripeList) {
+            Node<DataType> node;
+            for (int count = 0; count < batchSize && null != (node = stripe.poll()); count++) {
+                treeConstructor.add(node);
+                // the tree the node joins, or the tree of an omitted node, which is never a root in the constructor
+                changedRootSet.add(root(node));
+                snapshot = null;
+            }
+        }
+    }
+
+    private List<Node<DataType>> takeSnapshot() {
+        List<Node<DataType>> rootList = treeConstructor.treeList();
+        Map<Node<DataType>, Node<DataType>> previousCopyOf = new IdentityHashMap<>(copyOf);
+        copyOf.clear();
+        List<Node<DataType>> copyList = new ArrayList<>(rootList.size());
+        for (Node<DataType> root : rootList) {
+            Node<DataType> rootCopy = changedRootSet.contains(root) ? null : previousCopyOf.get(root);
+            if (null == rootCopy) {
+                rootCopy = copy(root);
+            }
+            copyOf.put(root, rootCopy);
+            copyList.add(rootCopy);
+        }
+        changedRootSet.clear();
+        return Collections.unmodifiableList(copyList);
+    }
+
+    /**
+     * @return root of the node, or the node itself if its ancestors make a cycle, which fails the next treeList()
+     */
+    private static <DataType extends Serializable> Node<DataType> root(Node<DataType> node) {
+        Node<DataType> slow = node;
+        Node<DataType> fast = node;
+        while (true) {
+            for (int step = 0; step < 2; step++) {
+                if (fast.root()) {
+                    return fast;
+                }
+                fast = fast.parent();
+            }
+            slow = slow.parent();
+            if (slow == fast) {
+                return node;
+            }
+        }
+    }
+
+    private static <DataType extends Serializable> Node<DataType> copy(Node<DataType> root) {
+        Node<DataType> rootCopy = new Node<>(root.data());
+        Deque<Node<DataType>> sourceStack = new ArrayDeque<>();
+        Deque<Node<DataType>> copyStack = new ArrayDeque<>();
+        sourceStack.push(root);
+        copyStack.push(rootCopy);
+        while (!sourceStack.isEmpty()) {
+            Node<DataType> source = sourceStack.pop();
+            Node<DataType> copy = copyStack.pop();
+            copy.ensureChildCapacity(source.childCount());
+            for (int index = 0; index < source.childCount(); index++) {
+                Node<DataType> child = source.child(index);
+                Node<DataType> childCopy = new Node<>(child.data());
+                copy.addChild(childCopy);
+                sourceStack.push(child);
+                copyStack.push(childCopy);
+            }
+        }
+        return rootCopy;
+    }
+}
@@ -0,0 +1,950 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.Stream;
+
+/**
+ * <p>
+ * out-of-core construction of trees of {@link LinkableDataType}, for inputs too large for {@link TreeConstructor}
+ * </p>
+ * <p>
+ * the payloads are appended to a file as they are added, while (parent id, id, payload offset) records are buffered
+ * and spilled as runs sorted by id to the work directory whenever the buffer reaches the memory budget.
+ * {@link #build()} merges the runs at most {@code mergeFanIn} at a time, drops the duplicates found next to each
+ * other in id order, and sorts the rest by parent id into the children file,
+ * where the children of every node are contiguous and in insertion order,
+ * then merge-joins it with the ids to find the roots, which are the records whose parent id matches no id
+ * </p>
+ * <p>
+ * at last the forest is laid out in pre-order: a depth first walk over the children file gives every data its
+ * pre-order index, the indexes are sorted back into insertion order and zipped with the payload file,
+ * then the payloads are sorted by pre-order index into the pre-order file, where every data is followed by its
+ * subtree. the walk is the only step reading at random, and only the small records, once;
+ * every traversal of the {@link ExternalTrees} built is a single sequential scan of the pre-order file
+ * </p>
+ * <p>
+ * the heap used stays within the budget no matter how large the input is:
+ * the buffers, the merge buffers and the sparse index of the children file are all bounded by it.
+ * the only exceptions are the walk, which keeps one entry per level of depth, and the payload of a single data
+ * </p>
+ * <p>
+ * a data with an id added before is omitted if its payload is the same byte for byte, just like equal data is
+ * omitted by {@link TreeConstructor#build(java.util.Collection)}, and rejected otherwise.
+ * a data in a cycle is never reached from any root, so it is left out of the trees along with its descendants,
+ * which are counted and reported by {@link ExternalTrees#unreachableCount()} and
+ * {@link ExternalTrees#unreachableIdList()}
+ * </p>
+ *
+ * @author ben.wangz
+ */
+public class ExternalTreeConstructor<DataType extends LinkableDataType> implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    // heap cost of a buffered record besides the characters of its ids, with compressed oops
+    private static final int RECORD_OVERHEAD = 128;
+    // heap cost of a buffered placement, and of a buffered entry besides its payload
+    private static final int PLACEMENT_OVERHEAD = 48;
+    private static final int ENTRY_OVERHEAD = 64;
+    private static final int INDEX_ENTRY_OVERHEAD = 64;
+    private static final int MIN_INDEX_INTERVAL = 64;
+    private static final int MAX_REPORTED = 10;
+    private static final Comparator<Record> PARENT_ID_ORDER = Comparator
+            .comparing((Record record) -> record.parentId)
+            .thenComparingLong(record -> record.sequence);
+    private static final Comparator<Record> ID_ORDER = Comparator
+            .comparing((Record record) -> record.id)
+            .thenComparingLong(record -> record.sequence);
+    private static final Comparator<Placement> SEQUENCE_ORDER
+            = Comparator.comparingLong(placement -> placement.sequence);
+    private static final Comparator<Entry> PRE_ORDER = Comparator.comparingLong(entry -> entry.preIndex);
+    private final Path directory;
+    private final long memoryBudget;
+    private final int mergeFanIn;
+    private final Function<DataType, byte[]> encoder;
+    private final Function<byte[], DataType> decoder;
+    private final Path payloadPath;
+    private final DataOutputStream payloadOutput;
+    private final RunBuffer<Record> idRunBuffer;
+    private long payloadOffset;
+    private long size;
+    private long parentIdLength;
+    private int runCount;
+    private boolean built;
+
+    /**
+     * @param workDirectory directory to create the work directory in, which should have room for about 3 times
+     *                      the encoded input
+     * @param memoryBudget  bytes of heap to use at most, at least {@code (mergeFanIn + 2) * 64KB}
+     * @param mergeFanIn    number of runs merged at a time, at least 2
+     * @param encoder       encoder of payloads
+     * @param decoder       decoder of payloads
+     * @throws IOException if the work directory cannot be created
+     */
+    public ExternalTreeConstructor(
+            Path workDirectory,
+            long memoryBudget,
+            int mergeFanIn,
+            Function<DataType, byte[]> encoder,
+            Function<byte[], DataType> decoder) throws IOException {
+        if (mergeFanIn < 2) {
+            throw new IllegalArgumentException(String.format("mergeFanIn(%s) should be at least 2", mergeFanIn));
+        }
+        if (memoryBudget < (mergeFanIn + 2L) * BUFFER_SIZE) {
+            throw new IllegalArgumentException(String.format(
+                    "memoryBudget(%s) is too small for mergeFanIn(%s), at least %s required",
+                    memoryBudget, mergeFanIn, (mergeFanIn + 2L) * BUFFER_SIZE));
+        }
+        this.memoryBudget = memoryBudget;
+        this.mergeFanIn = mergeFanIn;
+        this.encoder = encoder;
+        this.decoder = decoder;
+        this.directory = Files.createTempDirectory(workDirectory, "tree-");
+        this.payloadPath = directory.resolve("payload");
+        this.payloadOutput = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(payloadPath), BUFFER_SIZE));
+        this.idRunBuffer = new RunBuffer<>(memoryBudget, ID_ORDER, Record.FORMAT);
+    }
+
+    /**
+     * @param data data to add, whose parent id is null for a root
+     * @throws IOException if the payload or a run cannot be written
+     */
+    public void add(DataType data) throws IOException {
+        checkNotBuilt();
+        byte[] payload = encoder.apply(data);
+        // length prefixed, so the payload file can be scanned without the records
+        payloadOutput.writeInt(payload.length);
+        payloadOutput.write(payload);
+        Record record = new Record(
+                null == data.parentId() ? "" : data.parentId(),
+                data.id(),
+                size++,
+                payloadOffset + Integer.BYTES,
+                payload.length);
+        payloadOffset += Integer.BYTES + payload.length;
+        parentIdLength += record.parentId.length();
+        idRunBuffer.add(record, recordBytes(record));
+    }
+
+    /**
+     * merges the runs, finds the roots and lays the trees out in pre-order, after which no data can be added
+     *
+     * @return the trees on disk, which should be closed to delete the files
+     * @throws IOException              if the files cannot be read or written
+     * @throws IllegalArgumentException if any two data have the same id but different payloads
+     */
+    public ExternalTrees<DataType> build() throws IOException {
+        checkNotBuilt();
+        built = true;
+        try {
+            return merge();
+        } catch (IOException | RuntimeException e) {
+            deleteDirectory(directory);
+            throw e;
+        }
+    }
+
+    /**
+     * deletes the work directory if not built yet, otherwise it is owned by the {@link ExternalTrees} built
+     */
+    @Override
+    public void close() throws IOException {
+        if (built) {
+            return;
+        }
+        built = true;
+        payloadOutput.close();
+        deleteDirectory(directory);
+    }
+
+    private ExternalTrees<DataType> merge() throws IOException {
+        payloadOutput.close();
+        Path idPath = idRunBuffer.merge();
+        // the placements are kept within a quarter of the budget, along with the children runs or the sparse index
+        RunBuffer<Placement> placementBuffer = new RunBuffer<>(memoryBudget / 4, SEQUENCE_ORDER, Placement.FORMAT);
+        RunBuffer<Record> parentIdRunBuffer = new RunBuffer<>(memoryBudget / 2, PARENT_ID_ORDER, Record.FORMAT);
+        long omittedCount = 0;
+        try (DataInputStream idInput = openRun(idPath);
+             FileChannel payloadChannel = FileChannel.open(payloadPath, StandardOpenOption.READ)) {
+            Record previous = null;
+            for (long idRemaining = idInput.readLong(); idRemaining > 0; idRemaining--) {
+                Record record = Record.read(idInput);
+                if (null != previous && previous.id.equals(record.id)) {
+                    if (!Arrays.equals(payload(payloadChannel, previous), payload(payloadChannel, record))) {
+                        throw new IllegalArgumentException(
+                                String.format("different data found with the same id(%s)", record.id));
+                    }
+                    placementBuffer.add(new Placement(record.sequence, Placement.OMITTED, 0), PLACEMENT_OVERHEAD);
+                    omittedCount++;
+                    continue;
+                }
+                parentIdRunBuffer.add(record, recordBytes(record));
+                previous = record;
+            }
+        }
+        Path childPath = parentIdRunBuffer.merge();
+        long childCount = size - omittedCount;
+        // entries of the sparse index are kept within a quarter of the budget
+        long indexEntrySize = INDEX_ENTRY_OVERHEAD + 2 * parentIdLength / Math.max(1, size);
+        long indexInterval = Math.max(MIN_INDEX_INTERVAL, childCount * indexEntrySize / (memoryBudget / 4) + 1);
+        int indexSize = (int) ((childCount + indexInterval - 1) / indexInterval);
+        String[] indexKeyArray = new String[indexSize];
+        long[] indexPositionArray = new long[indexSize];
+        Path rootPath = directory.resolve("root");
+        long rootCount = 0;
+        try (DataInputStream childInput = openRun(childPath);
+             DataInputStream idInput = openRun(idPath);
+             DataOutputStream rootOutput = createRun(rootPath)) {
+            rootOutput.writeLong(0);
+            childInput.readLong();
+            long idRemaining = idInput.readLong();
+            String id = null;
+            long position = Long.BYTES;
+            for (long index = 0; index < childCount; index++) {
+                Record record = Record.read(childInput);
+                if (0 == index % indexInterval) {
+                    indexKeyArray[(int) (index / indexInterval)] = record.parentId;
+                    indexPositionArray[(int) (index / indexInterval)] = position;
+                }
+                position += record.encodedSize;
+                // the omitted duplicates are still in the id file, which only repeat an id
+                while ((null == id || id.compareTo(record.parentId) < 0) && idRemaining > 0) {
+                    id = Record.read(idInput).id;
+                    idRemaining--;
+                }
+                if (!record.parentId.equals(id)) {
+                    Record.write(rootOutput, record);
+                    rootCount++;
+                }
+            }
+        }
+        Files.delete(idPath);
+        writeCount(rootPath, rootCount);
+        try (ChildFile childFile = new ChildFile(childPath, indexKeyArray, indexPositionArray)) {
+            walk(childFile, rootPath, rootCount, placementBuffer);
+        }
+        Files.delete(childPath);
+        Files.delete(rootPath);
+        Path placementPath = placementBuffer.merge();
+        RunBuffer<Entry> entryBuffer = new RunBuffer<>(memoryBudget / 2, PRE_ORDER, Entry.FORMAT);
+        List<String> unreachableIdList = new ArrayList<>();
+        long nodeCount = zip(placementPath, entryBuffer, unreachableIdList);
+        Files.delete(placementPath);
+        Files.delete(payloadPath);
+        Path preOrderPath = directory.resolve("pre-order");
+        Files.move(entryBuffer.merge(), preOrderPath);
+        return new ExternalTrees<>(
+                directory, preOrderPath, size, rootCount, nodeCount, omittedCount,
+                Collections.unmodifiableList(unreachableIdList), decoder);
+    }
+
+    /**
+     * walks the trees depth first over the children file, which gives every data reached its pre-order index
+     */
+    private void walk(
+            ChildFile childFile,
+            Path rootPath,
+            long rootCount,
+            RunBuffer<Placement> placementBuffer) throws IOException {
+        long preIndex = 0;
+        // position of the next child to visit and the id of the parent, for every level
+        long[] positionStack = new long[16];
+        String[] parentIdStack = new String[16];
+        try (DataInputStream rootInput = openRun(rootPath)) {
+            rootInput.readLong();
+            for (long index = 0; index < rootCount; index++) {
+                Record root = Record.read(rootInput);
+                placementBuffer.add(new Placement(root.sequence, preIndex++, 0), PLACEMENT_OVERHEAD);
+                int stackSize = 0;
+                positionStack[stackSize] = childFile.firstChild(root.id);
+                parentIdStack[stackSize++] = root.id;
+                while (stackSize > 0) {
+                    int top = stackSize - 1;
+                    long position = positionStack[top];
+                    if (ChildFile.NONE == position) {
+                        parentIdStack[--stackSize] = null;
+                        continue;
+                    }
+                    Record child = childFile.read(position);
+                    positionStack[top] = childFile.nextSibling(position + child.encodedSize, parentIdStack[top]);
+                    placementBuffer.add(new Placement(child.sequence, preIndex++, stackSize), PLACEMENT_OVERHEAD);
+                    if (stackSize == positionStack.length) {
+                        positionStack = Arrays.copyOf(positionStack, stackSize << 1);
+                        parentIdStack = Arrays.copyOf(parentIdStack, stackSize << 1);
+                    }
+                    positionStack[stackSize] = childFile.firstChild(child.id);
+                    parentIdStack[stackSize++] = child.id;
+                }
+            }
+        }
+    }
+
+    /**
+     * zips the placements, sorted into insertion order, with the payload file, both read sequentially
+     *
+     * @param unreachableIdList list to add the ids of the first few data never reached from any root to
+     * @return number of data placed
+     */
+    private long zip(
+            Path placementPath,
+            RunBuffer<Entry> entryBuffer,
+            List<String> unreachableIdList) throws IOException {
+        long nodeCount = 0;
+        RunReader<Placement> placementReader = null;
+        try (DataInputStream payloadInput = openRun(payloadPath)) {
+            placementReader = new RunReader<>(openRun(placementPath), Placement.FORMAT);
+            boolean placed = placementReader.advance();
+            for (long sequence = 0; sequence < size; sequence++) {
+                byte[] payload = readBytes(payloadInput);
+                if (!placed || placementReader.head.sequence != sequence) {
+                    // in a cycle or below one
+                    if (unreachableIdList.size() < MAX_REPORTED) {
+                        unreachableIdList.add(decoder.apply(payload).id());
+                    }
+                    continue;
+                }
+                Placement placement = placementReader.head;
+                if (Placement.OMITTED != placement.preIndex) {
+                    entryBuffer.add(
+                            new Entry(placement.preIndex, placement.depth, payload),
+                            ENTRY_OVERHEAD + payload.length);
+                    nodeCount++;
+                }
+                placed = placementReader.advance();
+            }
+        } finally {
+            if (null != placementReader) {
+                placementReader.input.close();
+            }
+        }
+        return nodeCount;
+    }
+
+    private static long recordBytes(Record record) {
+        return RECORD_OVERHEAD + 2L * (record.parentId.length() + record.id.length());
+    }
+
+    /**
+     * reads at random, only for the records with an id added before
+     */
+    private static byte[] payload(FileChannel payloadChannel, Record record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(record.payloadLength);
+        while (buffer.hasRemaining()) {
+            if (payloadChannel.read(buffer, record.payloadOffset + buffer.position()) < 0) {
+                throw new IOException(String.format("payload of id(%s) is truncated", record.id));
+            }
+        }
+        return buffer.array();
+    }
+
+    private <T> Path writeRun(List<T> elementList, RunFormat<T> format) throws IOException {
+        Path runPath = directory.resolve(String.format("run-%s", runCount++));
+        try (DataOutputStream runOutput = createRun(runPath)) {
+            runOutput.writeLong(elementList.size());
+            for (T element : elementList) {
+                format.write(runOutput, element);
+            }
+        }
+        return runPath;
+    }
+
+    /**
+     * merges the runs in passes, at most {@code mergeFanIn} runs at a time
+     */
+    private <T> Path merge(List<Path> runList, Comparator<T> comparator, RunFormat<T> format) throws IOException {
+        List<Path> currentRunList = runList;
+        while (currentRunList.size() > 1) {
+            List<Path> nextRunList = new ArrayList<>();
+            for (int start = 0; start < currentRunList.size(); start += mergeFanIn) {
+                List<Path> groupList = currentRunList.subList(
+                        start, Math.min(start + mergeFanIn, currentRunList.size()));
+                nextRunList.add(1 == groupList.size()
+                        ? groupList.get(0)
+                        : mergeGroup(groupList, comparator, format));
+            }
+            currentRunList = nextRunList;
+        }
+        return currentRunList.get(0);
+    }
+
+    private <T> Path mergeGroup(
+            List<Path> groupList,
+            Comparator<T> comparator,
+            RunFormat<T> format) throws IOException {
+        Path runPath = directory.resolve(String.format("run-%s", runCount++));
+        List<RunReader<T>> readerList = new ArrayList<>();
+        try (DataOutputStream runOutput = createRun(runPath)) {
+            long count = 0;
+            PriorityQueue<RunReader<T>> readerQueue = new PriorityQueue<>(
+                    groupList.size(), (reader, anotherReader) -> comparator.compare(reader.head, anotherReader.head));
+            for (Path path : groupList) {
+                RunReader<T> reader = new RunReader<>(openRun(path), format);
+                readerList.add(reader);
+                count += reader.remaining;
+                if (reader.advance()) {
+                    readerQueue.add(reader);
+                }
+            }
+            runOutput.writeLong(count);
+            while (!readerQueue.isEmpty()) {
+                RunReader<T> reader = readerQueue.poll();
+                format.write(runOutput, reader.head);
+                if (reader.advance()) {
+                    readerQueue.add(reader);
+                }
+            }
+        } finally {
+            for (RunReader<T> reader : readerList) {
+                reader.input.close();
+            }
+        }
+        for (Path path : groupList) {
+            Files.delete(path);
+        }
+        return runPath;
+    }
+
+    private void checkNotBuilt() {
+        if (built) {
+            throw new IllegalStateException("already built or closed");
+        }
+    }
+
+    private static DataOutputStream createRun(Path path) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE));
+    }
+
+    private static DataInputStream openRun(Path path) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE));
+    }
+
+    private static void writeCount(Path path, long count) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES).putLong(0, count);
+            while (buffer.hasRemaining()) {
+                fileChannel.write(buffer, buffer.position());
+            }
+        }
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> pathStream = Files.list(directory)) {
+            for (Iterator<Path> iterator = pathStream.iterator(); iterator.hasNext(); ) {
+                Files.delete(iterator.next());
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private static void writeBytes(DataOutput output, byte[] bytes) throws IOException {
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInput input) throws IOException {
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * trees on disk, built by {@link ExternalTreeConstructor#build()}
+     * <p>
+     * every data is stored right before its subtree, along with its depth, so the traversals read the pre-order
+     * file from the beginning to the end and nothing else
+     * </p>
+     */
+    public static class ExternalTrees<DataType extends LinkableDataType> implements Closeable {
+        private final Path directory;
+        private final Path preOrderPath;
+        private final long size;
+        private final long rootCount;
+        private final long nodeCount;
+        private final long omittedCount;
+        private final List<String> unreachableIdList;
+        private final Function<byte[], DataType> decoder;
+
+        private ExternalTrees(
+                Path directory,
+                Path preOrderPath,
+                long size,
+                long rootCount,
+                long nodeCount,
+                long omittedCount,
+                List<String> unreachableIdList,
+                Function<byte[], DataType> decoder) {
+            this.directory = directory;
+            this.preOrderPath = preOrderPath;
+            this.size = size;
+            this.rootCount = rootCount;
+            this.nodeCount = nodeCount;
+            this.omittedCount = omittedCount;
+            this.unreachableIdList = unreachableIdList;
+            this.decoder = decoder;
+        }
+
+        /**
+         * @return number of data added, including the ones omitted or unreachable
+         */
+        public long size() {
+            return size;
+        }
+
+        public long rootCount() {
+            return rootCount;
+        }
+
+        /**
+         * @return number of data in the trees
+         */
+        public long nodeCount() {
+            return nodeCount;
+        }
+
+        /**
+         * @return number of data omitted for having the same id and payload as a data added before
+         */
+        public long omittedCount() {
+            return omittedCount;
+        }
+
+        /**
+         * @return number of data in cycles or below them, which are never reached from any root
+         */
+        public long unreachableCount() {
+            return size - omittedCount - nodeCount;
+        }
+
+        /**
+         * @return ids of the first few unreachable data in insertion order, at most {@value ExternalTreeConstructor#MAX_REPORTED}
+         */
+        public List<String> unreachableIdList() {
+            return unreachableIdList;
+        }
+
+        /**
+         * visits the trees one after another, in the order of the parent ids of the roots then insertion order
+         *
+         * @param consumer consumer of the data and its depth, which is 0 for a root
+         * @throws IOException if the files cannot be read
+         */
+        public void forEachPreOrder(ObjIntConsumer<DataType> consumer) throws IOException {
+            try (DataInputStream preOrderInput = openRun(preOrderPath)) {
+                for (long remaining = preOrderInput.readLong(); remaining > 0; remaining--) {
+                    Entry entry = Entry.read(preOrderInput);
+                    consumer.accept(decoder.apply(entry.payload), entry.depth);
+                }
+            }
+        }
+
+        /**
+         * each tree is read into nodes when iterated to, so a single tree should fit in the heap
+         *
+         * @return iterator of the trees, which closes the pre-order file once used up,
+         * and should be closed if left before that
+         */
+        public TreeIterator<DataType> treeIterator() {
+            return new TreeIterator<DataType>() {
+                private DataInputStream preOrderInput;
+                private long remaining;
+                // root of the next tree, read ahead while reading the previous tree
+                private Entry nextRoot;
+                private long index;
+
+                @Override
+                public boolean hasNext() {
+                    return index < rootCount;
+                }
+
+                @Override
+                public Node<DataType> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    try {
+                        if (null == preOrderInput) {
+                            preOrderInput = openRun(preOrderPath);
+                            remaining = preOrderInput.readLong();
+                            nextRoot = read();
+                        }
+                        @SuppressWarnings("unchecked")
+                        Node<DataType>[] path = new Node[16];
+                        path[0] = new Node<>(decoder.apply(nextRoot.payload));
+                        Entry entry;
+                        while (null != (entry = read()) && entry.depth > 0) {
+                            Node<DataType> node = new Node<>(decoder.apply(entry.payload));
+                            path[entry.depth - 1].addChild(node);
+                            if (entry.depth == path.length) {
+                                path = Arrays.copyOf(path, entry.depth << 1);
+                            }
+                            path[entry.depth] = node;
+                        }
+                        nextRoot = entry;
+                        if (++index == rootCount) {
+                            close();
+                        }
+                        return path[0];
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+
+                @Override
+                public void close() throws IOException {
+                    index = rootCount;
+                    nextRoot = null;
+                    if (null != preOrderInput) {
+                        preOrderInput.close();
+                    }
+                }
+
+                private Entry read() throws IOException {
+                    if (0 == remaining) {
+                        return null;
+                    }
+                    remaining--;
+                    return Entry.read(preOrderInput);
+                }
+            };
+        }
+
+        @Override
+        public void close() throws IOException {
+            deleteDirectory(directory);
+        }
+
+        /**
+         * iterator of the trees holding the pre-order file open until used up or closed
+         */
+        public interface TreeIterator<DataType extends LinkableDataType> extends Iterator<Node<DataType>>, Closeable {
+        }
+    }
+
+    /**
+     * the children file, looked up by parent id through a sparse index and read through a window,
+     * since the children of a node are usually close to the ones of its parent or siblings
+     */
+    private static class ChildFile implements Closeable {
+        private static final long NONE = -1;
+        private final FileChannel childChannel;
+        private final long childFileSize;
+        private final String[] indexKeyArray;
+        private final long[] indexPositionArray;
+        private ByteBuffer window = ByteBuffer.allocate(BUFFER_SIZE);
+        private long windowStart;
+
+        private ChildFile(Path childPath, String[] indexKeyArray, long[] indexPositionArray) throws IOException {
+            this.childChannel = FileChannel.open(childPath, StandardOpenOption.READ);
+            this.childFileSize = childChannel.size();
+            this.indexKeyArray = indexKeyArray;
+            this.indexPositionArray = indexPositionArray;
+            this.window.limit(0);
+        }
+
+        /**
+         * starts from the last sparse index entry before the parent id, which is at most one interval away
+         */
+        private long firstChild(String id) throws IOException {
+            int low = 0;
+            int high = indexKeyArray.length - 1;
+            int entry = -1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (indexKeyArray[middle].compareTo(id) < 0) {
+                    entry = middle;
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            long position = entry < 0 ? Long.BYTES : indexPositionArray[entry];
+            while (position < childFileSize) {
+                Record record = read(position);
+                int compared = record.parentId.compareTo(id);
+                if (0 == compared) {
+                    return position;
+                }
+                if (compared > 0) {
+                    return NONE;
+                }
+                position += record.encodedSize;
+            }
+            return NONE;
+        }
+
+        private long nextSibling(long position, String parentId) throws IOException {
+            return position < childFileSize && read(position).parentId.equals(parentId) ? position : NONE;
+        }
+
+        private Record read(long position) throws IOException {
+            int parentIdLength = slice(position, Integer.BYTES).getInt();
+            int idLength = slice(position + Integer.BYTES + parentIdLength, Integer.BYTES).getInt();
+            int encodedSize = Record.encodedSize(parentIdLength, idLength);
+            return Record.read(slice(position, encodedSize), encodedSize);
+        }
+
+        private ByteBuffer slice(long position, int length) throws IOException {
+            if (position < windowStart || position + length > windowStart + window.limit()) {
+                if (length > window.capacity()) {
+                    window = ByteBuffer.allocate(length);
+                }
+                window.clear();
+                windowStart = position;
+                while (window.position() < length) {
+                    if (childChannel.read(window, windowStart + window.position()) < 0) {
+                        throw new IOException(String.format("children file is truncated at %s", position));
+                    }
+                }
+                window.flip();
+            }
+            ByteBuffer slice = window.duplicate();
+            slice.position((int) (position - windowStart));
+            slice.limit(slice.position() + length);
+            return slice;
+        }
+
+        @Override
+        public void close() throws IOException {
+            childChannel.close();
+        }
+    }
+
+    /**
+     * encoding of the elements of a run
+     */
+    private interface RunFormat<T> {
+        void write(DataOutput output, T element) throws IOException;
+
+        T read(DataInput input) throws IOException;
+    }
+
+    /**
+     * buffer spilled as a sorted run whenever it reaches its share of the budget
+     */
+    private class RunBuffer<T> {
+        private final long budget;
+        private final Comparator<T> comparator;
+        private final RunFormat<T> format;
+        private final List<T> elementList = new ArrayList<>();
+        private final List<Path> runList = new ArrayList<>();
+        private long bufferedBytes;
+
+        private RunBuffer(long budget, Comparator<T> comparator, RunFormat<T> format) {
+            this.budget = budget;
+            this.comparator = comparator;
+            this.format = format;
+        }
+
+        private void add(T element, long bytes) throws IOException {
+            elementList.add(element);
+            bufferedBytes += bytes;
+            if (bufferedBytes >= budget) {
+                spill();
+            }
+        }
+
+        private void spill() throws IOException {
+            // one run is written even if nothing is added, so there is always something to merge
+            if (elementList.isEmpty() && !runList.isEmpty()) {
+                return;
+            }
+            elementList.sort(comparator);
+            runList.add(writeRun(elementList, format));
+            elementList.clear();
+            bufferedBytes = 0;
+        }
+
+        private Path merge() throws IOException {
+            spill();
+            return ExternalTreeConstructor.this.merge(runList, comparator, format);
+        }
+    }
+
+    /**
+     * encoded as the parent id, the id, the sequence number, the payload offset and the payload length
+     */
+    private static class Record {
+        private static final RunFormat<Record> FORMAT = new RunFormat<Record>() {
+            @Override
+            public void write(DataOutput output, Record record) throws IOException {
+                Record.write(output, record);
+            }
+
+            @Override
+            public Record read(DataInput input) throws IOException {
+                return Record.read(input);
+            }
+        };
+        private final String parentId;
+        private final String id;
+        private final long sequence;
+        private final long payloadOffset;
+        private final int payloadLength;
+        private final int encodedSize;
+
+        private Record(String parentId, String id, long sequence, long payloadOffset, int payloadLength) {
+            this(parentId, id, sequence, payloadOffset, payloadLength, 0);
+        }
+
+        private Record(
+                String parentId,
+                String id,
+                long sequence,
+                long payloadOffset,
+                int payloadLength,
+                int encodedSize) {
+            this.parentId = parentId;
+            this.id = id;
+            this.sequence = sequence;
+            this.payloadOffset = payloadOffset;
+            this.payloadLength = payloadLength;
+            this.encodedSize = encodedSize;
+        }
+
+        private static int encodedSize(int parentIdLength, int idLength) {
+            return 2 * Integer.BYTES + parentIdLength + idLength + 2 * Long.BYTES + Integer.BYTES;
+        }
+
+        private static void write(DataOutput output, Record record) throws IOException {
+            writeBytes(output, record.parentId.getBytes(StandardCharsets.UTF_8));
+            writeBytes(output, record.id.getBytes(StandardCharsets.UTF_8));
+            output.writeLong(record.sequence);
+            output.writeLong(record.payloadOffset);
+            output.writeInt(record.payloadLength);
+        }
+
+        private static Record read(DataInput input) throws IOException {
+            byte[] parentId = readBytes(input);
+            byte[] id = readBytes(input);
+            return new Record(
+                    new String(parentId, StandardCharsets.UTF_8),
+                    new String(id, StandardCharsets.UTF_8),
+                    input.readLong(),
+                    input.readLong(),
+                    input.readInt(),
+                    encodedSize(parentId.length, id.length));
+        }
+
+        private static Record read(ByteBuffer buffer, int encodedSize) {
+            byte[] parentId = new byte[buffer.getInt()];
+            buffer.get(parentId);
+            byte[] id = new byte[buffer.getInt()];
+            buffer.get(id);
+            return new Record(
+                    new String(parentId, StandardCharsets.UTF_8),
+                    new String(id, StandardCharsets.UTF_8),
+                    buffer.getLong(),
+                    buffer.getLong(),
+                    buffer.getInt(),
+                    encodedSize);
+        }
+    }
+
+    /**
+     * pre-order index and depth of the data with the sequence number, encoded in this order
+     */
+    private static class Placement {
+        // pre-order index of a duplicate, which is left out
+        private static final long OMITTED = -1;
+        private static final RunFormat<Placement> FORMAT = new RunFormat<Placement>() {
+            @Override
+            public void write(DataOutput output, Placement placement) throws IOException {
+                output.writeLong(placement.sequence);
+                output.writeLong(placement.preIndex);
+                output.writeInt(placement.depth);
+            }
+
+            @Override
+            public Placement read(DataInput input) throws IOException {
+                return new Placement(input.readLong(), input.readLong(), input.readInt());
+            }
+        };
+        private final long sequence;
+        private final long preIndex;
+        private final int depth;
+
+        private Placement(long sequence, long preIndex, int depth) {
+            this.sequence = sequence;
+            this.preIndex = preIndex;
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * element of the pre-order file, encoded as the pre-order index, the depth and the payload
+     */
+    private static class Entry {
+        private static final RunFormat<Entry> FORMAT = new RunFormat<Entry>() {
+            @Override
+            public void write(DataOutput output, Entry entry) throws IOException {
+                output.writeLong(entry.preIndex);
+                output.writeInt(entry.depth);
+                writeBytes(output, entry.payload);
+            }
+
+            @Override
+            public Entry read(DataInput input) throws IOException {
+                return Entry.read(input);
+            }
+        };
+        private final long preIndex;
+        private final int depth;
+        private final byte[] payload;
+
+        private Entry(long preIndex, int depth, byte[] payload) {
+            this.preIndex = preIndex;
+            this.depth = depth;
+            this.payload = payload;
+        }
+
+        private static Entry read(DataInput input) throws IOException {
+            return new Entry(input.readLong(), input.readInt(), readBytes(input));
+        }
+    }
+
+    private static class RunReader<T> {
+        private final DataInputStream input;
+        private final RunFormat<T> format;
+        private long remaining;
+        private T head;
+
+        private RunReader(DataInputStream input, RunFormat<T> format) throws IOException {
+            this.input = input;
+            this.format = format;
+            this.remaining = input.readLong();
+        }
+
+        private boolean advance() throws IOException {
+            if (0 == remaining) {
+                head = null;
+                return false;
+            }
+            remaining--;
+            head = format.read(input);
+            return true;
+        }
+    }
+}
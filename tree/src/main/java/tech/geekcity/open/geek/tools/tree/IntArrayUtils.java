@@ -0,0 +1,33 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import java.util.Arrays;
+
+/**
+ * helpers of the int arrays used as stacks and growable lists by the iterative tree walks
+ *
+ * @author ben.wangz
+ */
+class IntArrayUtils {
+    private IntArrayUtils() {
+    }
+
+    /**
+     * @return the array itself if it holds {@code capacity} elements, otherwise a copy at least twice as large
+     */
+    static int[] ensureCapacity(int[] array, int capacity) {
+        return capacity <= array.length
+                ? array
+                : Arrays.copyOf(array, Math.max(capacity, array.length << 1));
+    }
+
+    /**
+     * reverses the elements in [{@code start}, {@code end})
+     */
+    static void reverse(int[] array, int start, int end) {
+        for (int left = start, right = end - 1; left < right; left++, right--) {
+            int temp = array[left];
+            array[left] = array[right];
+            array[right] = temp;
+        }
+    }
+}
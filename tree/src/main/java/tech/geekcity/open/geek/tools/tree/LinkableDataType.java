@@ -3,6 +3,7 @@ package tech.geekcity.open.geek.tools.tree;
 import org.apache.commons.lang3.StringUtils;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Objects;
 
 /**
@@ -11,6 +12,10 @@ import java.util.Objects;
  * NodeComparator can have different implementations
  * but should behave the same with {@link LinkableDataType#nodeComparator()}
  * </p>
+ * <p>
+ * equal data is omitted, which is told by {@link Object#equals(Object)}, so equal data should have the same
+ * {@link #id()} and {@link #parentId()}; {@link Object#hashCode()} is not required to match
+ * </p>
  *
  * @author ben.wangz
  */
@@ -33,6 +38,12 @@ public interface LinkableDataType extends Serializable {
             public boolean equals(Node<DataType> node, Node<DataType> anotherNode) {
                 return Objects.equals(node.data(), anotherNode.data());
             }
+
+            @Override
+            public Object identityKey(Node<DataType> node) {
+                // not the data itself, whose hashCode may not match its equals
+                return Arrays.asList(node.data().id(), node.data().parentId());
+            }
         };
     }
 }
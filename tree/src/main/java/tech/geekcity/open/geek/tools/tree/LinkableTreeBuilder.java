@@ -0,0 +1,273 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * <p>
+ * builds trees of {@link LinkableDataType} in bulk:
+ * one pass to index nodes by {@link LinkableDataType#id()},
+ * another pass to attach every node to its parent by {@link LinkableDataType#parentId()}
+ * </p>
+ *
+ * @author ben.wangz
+ * @see TreeConstructor#build(Collection)
+ * @see TreeConstructor#build(Collection, int)
+ */
+class LinkableTreeBuilder {
+    private static final int ROOT = -1;
+    private static final int OMITTED = -2;
+    private static final int ORPHAN = -3;
+    private static final byte UNVISITED = 0;
+    private static final byte VISITING = 1;
+    private static final byte VISITED = 2;
+
+    private LinkableTreeBuilder() {
+    }
+
+    static <DataType extends LinkableDataType> List<Node<DataType>> build(
+            Collection<DataType> dataCollection,
+            TreeValidation<DataType> treeValidation) {
+        Map<String, Integer> positionIdKeyed = new HashMap<>(capacity(dataCollection.size()));
+        List<Node<DataType>> nodeList = new ArrayList<>(dataCollection.size());
+        for (DataType data : dataCollection) {
+            Integer existingPosition = positionIdKeyed.putIfAbsent(data.id(), nodeList.size());
+            if (null == existingPosition) {
+                nodeList.add(new Node<>(data));
+            } else {
+                checkDuplicate(nodeList.get(existingPosition).data(), data);
+            }
+        }
+        int size = nodeList.size();
+        int[] parentPositionArray = new int[size];
+        for (int position = 0; position < size; position++) {
+            String parentId = nodeList.get(position).data().parentId();
+            Integer parentPosition = null == parentId ? null : positionIdKeyed.get(parentId);
+            parentPositionArray[position] = null == parentPosition ? ROOT : parentPosition;
+        }
+        Node<DataType> syntheticRoot = validate(
+                parentPositionArray, position -> nodeList.get(position).data(), treeValidation);
+        List<Node<DataType>> rootNodeList = new ArrayList<>();
+        for (int position = 0; position < size; position++) {
+            int parentPosition = parentPositionArray[position];
+            if (ROOT == parentPosition) {
+                rootNodeList.add(nodeList.get(position));
+            } else if (ORPHAN == parentPosition) {
+                syntheticRoot.addChild(nodeList.get(position));
+            } else {
+                nodeList.get(parentPosition).addChild(nodeList.get(position));
+            }
+        }
+        if (null != syntheticRoot) {
+            rootNodeList.add(syntheticRoot);
+        }
+        return rootNodeList;
+    }
+
+    static <DataType extends LinkableDataType> List<Node<DataType>> build(
+            Collection<DataType> dataCollection,
+            int parallelism,
+            TreeValidation<DataType> treeValidation) {
+        ForkJoinPool forkJoinPool = new ForkJoinPool(parallelism);
+        try {
+            // parallel streams run in the pool which submits them
+            return forkJoinPool.submit(() -> parallelBuild(dataCollection, parallelism, treeValidation)).join();
+        } finally {
+            forkJoinPool.shutdown();
+        }
+    }
+
+    private static <DataType extends LinkableDataType> List<Node<DataType>> parallelBuild(
+            Collection<DataType> dataCollection,
+            int parallelism,
+            TreeValidation<DataType> treeValidation) {
+        List<DataType> dataList = dataCollection instanceof RandomAccess && dataCollection instanceof List
+                ? (List<DataType>) dataCollection
+                : new ArrayList<>(dataCollection);
+        int size = dataList.size();
+        // format id -> the smallest position, which is deterministic regardless of thread scheduling
+        Map<String, Integer> positionIdKeyed = new ConcurrentHashMap<>(capacity(size), 0.75f, parallelism);
+        IntStream.range(0, size)
+                .parallel()
+                .forEach(position -> positionIdKeyed.merge(dataList.get(position).id(), position, Math::min));
+        @SuppressWarnings("unchecked")
+        Node<DataType>[] nodeArray = new Node[size];
+        int[] parentPositionArray = new int[size];
+        IntStream.range(0, size)
+                .parallel()
+                .forEach(position -> {
+                    DataType data = dataList.get(position);
+                    int firstPosition = positionIdKeyed.get(data.id());
+                    if (firstPosition != position) {
+                        checkDuplicate(dataList.get(firstPosition), data);
+                        parentPositionArray[position] = OMITTED;
+                        return;
+                    }
+                    nodeArray[position] = new Node<>(data);
+                    Integer parentPosition = null == data.parentId() ? null : positionIdKeyed.get(data.parentId());
+                    parentPositionArray[position] = null == parentPosition ? ROOT : parentPosition;
+                });
+        Node<DataType> syntheticRoot = validate(parentPositionArray, dataList::get, treeValidation);
+        // group children by parent in position order, which is a cheap sequential pass over ints
+        int[] childOffsetArray = new int[size + 1];
+        for (int parentPosition : parentPositionArray) {
+            if (parentPosition >= 0) {
+                childOffsetArray[parentPosition + 1]++;
+            }
+        }
+        for (int position = 0; position < size; position++) {
+            childOffsetArray[position + 1] += childOffsetArray[position];
+        }
+        int[] childPositionArray = new int[childOffsetArray[size]];
+        int[] fillArray = Arrays.copyOf(childOffsetArray, size);
+        for (int position = 0; position < size; position++) {
+            int parentPosition = parentPositionArray[position];
+            if (parentPosition >= 0) {
+                childPositionArray[fillArray[parentPosition]++] = position;
+            }
+        }
+        // every parent links its own children, so no children list is shared between threads
+        IntStream.range(0, size)
+                .parallel()
+                .forEach(parentPosition -> {
+                    int childCount = childOffsetArray[parentPosition + 1] - childOffsetArray[parentPosition];
+                    if (0 == childCount) {
+                        return;
+                    }
+                    nodeArray[parentPosition].ensureChildCapacity(childCount);
+                    for (int index = childOffsetArray[parentPosition];
+                         index < childOffsetArray[parentPosition + 1];
+                         index++) {
+                        nodeArray[parentPosition].addChild(nodeArray[childPositionArray[index]]);
+                    }
+                });
+        List<Node<DataType>> rootNodeList = IntStream.range(0, size)
+                .parallel()
+                .filter(position -> ROOT == parentPositionArray[position])
+                .mapToObj(position -> nodeArray[position])
+                .collect(Collectors.toList());
+        if (null != syntheticRoot) {
+            for (int position = 0; position < size; position++) {
+                if (ORPHAN == parentPositionArray[position]) {
+                    syntheticRoot.addChild(nodeArray[position]);
+                }
+            }
+            rootNodeList.add(syntheticRoot);
+        }
+        return rootNodeList;
+    }
+
+    /**
+     * <p>
+     * finds cycles and orphans in O(N) by coloring the parent links iteratively,
+     * then applies the policies of the validation:
+     * the member of a cycle coming first becomes a {@link #ROOT},
+     * and the orphans to attach to the synthetic root are marked as {@link #ORPHAN};
+     * without a validation, any cycle fails
+     * </p>
+     *
+     * @return the synthetic root if there are orphans to attach, or null
+     */
+    private static <DataType extends LinkableDataType> Node<DataType> validate(
+            int[] parentPositionArray,
+            IntFunction<DataType> dataFunction,
+            TreeValidation<DataType> validation) {
+        TreeValidation<DataType> treeValidation = null == validation ? failOnCycle() : validation;
+        int size = parentPositionArray.length;
+        byte[] colorArray = new byte[size];
+        int[] pathArray = new int[16];
+        List<Integer> cycleStartList = new ArrayList<>();
+        for (int start = 0; start < size; start++) {
+            int pathSize = 0;
+            int position = start;
+            // walk up until a root, a position visited by another walk, or a position on this walk
+            while (position >= 0 && UNVISITED == colorArray[position]) {
+                colorArray[position] = VISITING;
+                pathArray = IntArrayUtils.ensureCapacity(pathArray, pathSize + 1);
+                pathArray[pathSize++] = position;
+                position = parentPositionArray[position];
+            }
+            if (position >= 0 && VISITING == colorArray[position]) {
+                // members of the cycle are on this walk, from the position reached to the end
+                int first = position;
+                for (int member = parentPositionArray[position];
+                     member != position;
+                     member = parentPositionArray[member]) {
+                    first = Math.min(first, member);
+                }
+                cycleStartList.add(first);
+            }
+            for (int index = 0; index < pathSize; index++) {
+                colorArray[pathArray[index]] = VISITED;
+            }
+        }
+        List<List<String>> cycleList = new ArrayList<>();
+        for (int first : cycleStartList) {
+            List<String> cycle = new ArrayList<>();
+            int member = first;
+            do {
+                cycle.add(dataFunction.apply(member).id());
+                member = parentPositionArray[member];
+            } while (member != first);
+            cycleList.add(cycle);
+        }
+        List<String> orphanIdList = new ArrayList<>();
+        for (int position = 0; position < size; position++) {
+            if (ROOT == parentPositionArray[position]) {
+                DataType data = dataFunction.apply(position);
+                if (StringUtils.isNotEmpty(data.parentId())) {
+                    orphanIdList.add(data.id());
+                }
+            }
+        }
+        treeValidation.report(new TreeValidation.Report(cycleList, orphanIdList));
+        Node<DataType> syntheticRoot = null;
+        if (TreeValidation.OrphanPolicy.ATTACH_TO_SYNTHETIC_ROOT == treeValidation.orphanPolicy()
+                && !orphanIdList.isEmpty()) {
+            // before breaking the cycles, whose members have got parents
+            for (int position = 0; position < size; position++) {
+                if (ROOT == parentPositionArray[position]
+                        && StringUtils.isNotEmpty(dataFunction.apply(position).parentId())) {
+                    parentPositionArray[position] = ORPHAN;
+                }
+            }
+            syntheticRoot = new Node<>(treeValidation.syntheticRoot());
+        }
+        for (int first : cycleStartList) {
+            parentPositionArray[first] = ROOT;
+        }
+        return syntheticRoot;
+    }
+
+    /**
+     * the validation of the builds without one, which never leaves a cycle linked in the nodes
+     */
+    static <DataType extends LinkableDataType> TreeValidation<DataType> failOnCycle() {
+        return new TreeValidation<>(TreeValidation.CyclePolicy.FAIL, TreeValidation.OrphanPolicy.KEEP_AS_ROOT);
+    }
+
+    static <DataType extends LinkableDataType> void checkDuplicate(DataType data, DataType anotherData) {
+        // omit equal data just like TreeConstructor#add does
+        if (!Objects.equals(data, anotherData)) {
+            throw new RuntimeException(
+                    String.format("more than one data found with the same id(%s)", data.id()));
+        }
+    }
+
+    static int capacity(int expectedSize) {
+        return (int) Math.min(Integer.MAX_VALUE, expectedSize / 3L * 4L + 16);
+    }
+}
@@ -0,0 +1,110 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * open addressing hash map from long to non-negative int, with linear probing,
+ * which never boxes and allocates nothing but its two arrays
+ * </p>
+ * <p>
+ * an empty slot is marked by value {@link #NONE}, so any long is a valid key
+ * </p>
+ *
+ * @author ben.wangz
+ */
+class LongIntHashMap {
+    static final int NONE = -1;
+    private static final int MIN_CAPACITY = 16;
+    private long[] keyArray;
+    private int[] valueArray;
+    private int size;
+    private int mask;
+    private int resizeThreshold;
+
+    LongIntHashMap(int expectedSize) {
+        allocate(tableSize(expectedSize));
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return value of the key, or {@link #NONE} if not found
+     */
+    int get(long key) {
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            int value = valueArray[slot];
+            if (NONE == value || keyArray[slot] == key) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * @param value non-negative value
+     * @return the value kept, or {@link #NONE} if the value is put
+     */
+    int putIfAbsent(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException(String.format("value(%s) should not be negative", value));
+        }
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            int existingValue = valueArray[slot];
+            if (NONE == existingValue) {
+                keyArray[slot] = key;
+                valueArray[slot] = value;
+                if (++size > resizeThreshold) {
+                    resize();
+                }
+                return NONE;
+            }
+            if (keyArray[slot] == key) {
+                return existingValue;
+            }
+        }
+    }
+
+    private int slot(long key) {
+        // fibonacci hashing, which spreads sequential ids over the table
+        long hash = key * 0x9e3779b97f4a7c15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void resize() {
+        long[] oldKeyArray = keyArray;
+        int[] oldValueArray = valueArray;
+        allocate(keyArray.length << 1);
+        for (int slot = 0; slot < oldValueArray.length; slot++) {
+            if (NONE != oldValueArray[slot]) {
+                int newSlot = slot(oldKeyArray[slot]);
+                while (NONE != valueArray[newSlot]) {
+                    newSlot = (newSlot + 1) & mask;
+                }
+                keyArray[newSlot] = oldKeyArray[slot];
+                valueArray[newSlot] = oldValueArray[slot];
+            }
+        }
+    }
+
+    private void allocate(int tableSize) {
+        keyArray = new long[tableSize];
+        valueArray = new int[tableSize];
+        Arrays.fill(valueArray, NONE);
+        mask = tableSize - 1;
+        // load factor 0.5 keeps the probes short
+        resizeThreshold = tableSize >>> 1;
+    }
+
+    private static int tableSize(int expectedSize) {
+        long tableSize = MIN_CAPACITY;
+        while (tableSize < 2L * expectedSize) {
+            tableSize <<= 1;
+        }
+        if (tableSize > 1 << 30) {
+            throw new IllegalArgumentException(String.format("expectedSize(%s) is too large", expectedSize));
+        }
+        return (int) tableSize;
+    }
+}
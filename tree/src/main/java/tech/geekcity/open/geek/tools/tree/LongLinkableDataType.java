@@ -0,0 +1,22 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import java.io.Serializable;
+
+/**
+ * <p>
+ * {@link LinkableDataType} with 64-bit ids, which are linked by {@link LongTreeConstructor}
+ * without hashing strings or boxing keys
+ * </p>
+ * <p>
+ * a data whose parent id matches no id, such as {@link #NO_PARENT}, is a root
+ * </p>
+ *
+ * @author ben.wangz
+ */
+public interface LongLinkableDataType extends Serializable {
+    long NO_PARENT = Long.MIN_VALUE;
+
+    long id();
+
+    long parentId();
+}
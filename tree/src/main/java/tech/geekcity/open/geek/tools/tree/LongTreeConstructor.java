@@ -0,0 +1,76 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * <p>
+ * builds trees of {@link LongLinkableDataType} in bulk, the same trees {@link TreeConstructor#build(Collection)}
+ * builds for string ids
+ * </p>
+ * <p>
+ * ids are indexed by an open addressing {@link LongIntHashMap} to the positions of the data,
+ * and the parent links are kept in int arrays, so neither the ids nor the positions are boxed.
+ * the children of every node are counted before linking, so every children array is allocated once in its exact size
+ * </p>
+ *
+ * @author ben.wangz
+ */
+public class LongTreeConstructor {
+    private static final int ROOT = LongIntHashMap.NONE;
+
+    private LongTreeConstructor() {
+    }
+
+    /**
+     * equal data with the same id is omitted, and the children keep the order of the collection
+     *
+     * @param dataCollection data to build trees from
+     * @param <DataType>     type of data
+     * @return root node list
+     * @throws RuntimeException if different data is found with the same id
+     */
+    @SuppressWarnings("unchecked")
+    public static <DataType extends LongLinkableDataType> List<Node<DataType>> build(
+            Collection<DataType> dataCollection) {
+        LongIntHashMap positionIdKeyed = new LongIntHashMap(dataCollection.size());
+        Object[] dataArray = new Object[dataCollection.size()];
+        int size = 0;
+        for (DataType data : dataCollection) {
+            int existingPosition = positionIdKeyed.putIfAbsent(data.id(), size);
+            if (LongIntHashMap.NONE == existingPosition) {
+                dataArray[size++] = data;
+            } else if (!Objects.equals(dataArray[existingPosition], data)) {
+                // omit equal data just like TreeConstructor#build does
+                throw new RuntimeException(
+                        String.format("more than one data found with the same id(%s)", data.id()));
+            }
+        }
+        int[] parentPositionArray = new int[size];
+        int[] childCountArray = new int[size];
+        for (int position = 0; position < size; position++) {
+            int parentPosition = positionIdKeyed.get(((DataType) dataArray[position]).parentId());
+            parentPositionArray[position] = parentPosition;
+            if (ROOT != parentPosition) {
+                childCountArray[parentPosition]++;
+            }
+        }
+        Node<DataType>[] nodeArray = new Node[size];
+        for (int position = 0; position < size; position++) {
+            nodeArray[position] = new Node<>((DataType) dataArray[position]);
+            nodeArray[position].ensureChildCapacity(childCountArray[position]);
+        }
+        List<Node<DataType>> rootNodeList = new ArrayList<>();
+        for (int position = 0; position < size; position++) {
+            int parentPosition = parentPositionArray[position];
+            if (ROOT == parentPosition) {
+                rootNodeList.add(nodeArray[position]);
+            } else {
+                nodeArray[parentPosition].addChild(nodeArray[position]);
+            }
+        }
+        return rootNodeList;
+    }
+}
@@ -0,0 +1,338 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+/**
+ * <p>
+ * read only view of a {@link TreeSnapshot} persisted in a file, which is opened by {@link FileChannel#map}
+ * </p>
+ * <p>
+ * the file is laid out as a header, the parent, subtree end and depth tables, the root table,
+ * the payload offset table and at last the serialized payloads, all of them indexed by the pre-order node index.
+ * opening a file maps it without reading it,
+ * the tables are paged in by the operating system when visited
+ * and the payloads are decoded each time {@link #data(int)} is called,
+ * so the heap footprint stays close to zero no matter how large the trees are
+ * </p>
+ *
+ * @author ben.wangz
+ */
+public class MappedTreeSnapshot<DataType extends Serializable> {
+    public static final int NONE = TreeSnapshot.NONE;
+    private static final int MAGIC = 0x54524545;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 * Integer.BYTES;
+    private static final int CHUNK_SIZE = 1 << 30;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private final Function<byte[], DataType> decoder;
+    private final int size;
+    private final int rootCount;
+    private final MappedByteBuffer tableBuffer;
+    // the payloads may be larger than one buffer can map
+    private final MappedByteBuffer[] payloadChunkArray;
+    private final int chunkSize;
+
+    private MappedTreeSnapshot(
+            Function<byte[], DataType> decoder,
+            int size,
+            int rootCount,
+            MappedByteBuffer tableBuffer,
+            MappedByteBuffer[] payloadChunkArray,
+            int chunkSize) {
+        this.decoder = decoder;
+        this.size = size;
+        this.rootCount = rootCount;
+        this.tableBuffer = tableBuffer;
+        this.payloadChunkArray = payloadChunkArray;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @param treeSnapshot snapshot to persist
+     * @param path         file to write, which will be replaced if exists
+     * @param encoder      encoder of payloads
+     * @param <DataType>   type of data
+     * @throws IOException if the file cannot be written
+     */
+    public static <DataType extends Serializable> void write(
+            TreeSnapshot<DataType> treeSnapshot,
+            Path path,
+            Function<DataType, byte[]> encoder) throws IOException {
+        int size = treeSnapshot.size();
+        int rootCount = treeSnapshot.rootCount();
+        long offsetTableStart = rootTableStart(size) + (long) rootCount * Integer.BYTES;
+        long payloadStart = offsetTableStart + (size + 1L) * Long.BYTES;
+        try (FileChannel fileChannel = FileChannel.open(
+                path,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(rootCount);
+            for (int index = 0; index < size; index++) {
+                putInt(fileChannel, buffer, treeSnapshot.parent(index));
+            }
+            for (int index = 0; index < size; index++) {
+                putInt(fileChannel, buffer, treeSnapshot.subtreeEnd(index));
+            }
+            for (int index = 0; index < size; index++) {
+                putInt(fileChannel, buffer, treeSnapshot.depth(index));
+            }
+            for (int rootIndex = 0; rootIndex < rootCount; rootIndex++) {
+                putInt(fileChannel, buffer, treeSnapshot.root(rootIndex));
+            }
+            flush(fileChannel, buffer);
+            // payloads first, the offsets are known after that
+            long[] offsetArray = new long[size + 1];
+            fileChannel.position(payloadStart);
+            for (int index = 0; index < size; index++) {
+                byte[] payload = encoder.apply(treeSnapshot.data(index));
+                offsetArray[index + 1] = offsetArray[index] + payload.length;
+                if (payload.length > buffer.remaining()) {
+                    flush(fileChannel, buffer);
+                }
+                if (payload.length > buffer.remaining()) {
+                    writeFully(fileChannel, ByteBuffer.wrap(payload));
+                } else {
+                    buffer.put(payload);
+                }
+            }
+            flush(fileChannel, buffer);
+            fileChannel.position(offsetTableStart);
+            for (long offset : offsetArray) {
+                if (buffer.remaining() < Long.BYTES) {
+                    flush(fileChannel, buffer);
+                }
+                buffer.putLong(offset);
+            }
+            flush(fileChannel, buffer);
+        }
+    }
+
+    /**
+     * maps the file without reading the tables or payloads
+     *
+     * @param path       file written by {@link #write(TreeSnapshot, Path, Function)}
+     * @param decoder    decoder of payloads
+     * @param <DataType> type of data
+     * @return the snapshot mapped
+     * @throws IOException if the file cannot be mapped or is not in this format
+     */
+    public static <DataType extends Serializable> MappedTreeSnapshot<DataType> open(
+            Path path,
+            Function<byte[], DataType> decoder) throws IOException {
+        return open(path, decoder, CHUNK_SIZE);
+    }
+
+    static <DataType extends Serializable> MappedTreeSnapshot<DataType> open(
+            Path path,
+            Function<byte[], DataType> decoder,
+            int chunkSize) throws IOException {
+        // the mapping stays valid after the channel is closed
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (fileChannel.size() < HEADER_SIZE) {
+                throw new IOException(String.format("file(%s) is not a tree snapshot", path));
+            }
+            ByteBuffer header = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (MAGIC != header.getInt() || VERSION != header.getInt()) {
+                throw new IOException(String.format("file(%s) is not a tree snapshot", path));
+            }
+            int size = header.getInt();
+            int rootCount = header.getInt();
+            long payloadStart = rootTableStart(size) + (long) rootCount * Integer.BYTES + (size + 1L) * Long.BYTES;
+            if (payloadStart > Integer.MAX_VALUE || payloadStart > fileChannel.size()) {
+                throw new IOException(String.format(
+                        "file(%s) with %s nodes is truncated or too large to map", path, size));
+            }
+            MappedByteBuffer tableBuffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, payloadStart);
+            long payloadSize = fileChannel.size() - payloadStart;
+            MappedByteBuffer[] payloadChunkArray = new MappedByteBuffer[(int) ((payloadSize + chunkSize - 1) / chunkSize)];
+            for (int chunk = 0; chunk < payloadChunkArray.length; chunk++) {
+                long chunkStart = (long) chunk * chunkSize;
+                payloadChunkArray[chunk] = fileChannel.map(
+                        FileChannel.MapMode.READ_ONLY,
+                        payloadStart + chunkStart,
+                        Math.min(chunkSize, payloadSize - chunkStart));
+            }
+            return new MappedTreeSnapshot<>(decoder, size, rootCount, tableBuffer, payloadChunkArray, chunkSize);
+        }
+    }
+
+    /**
+     * @return number of nodes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return number of trees
+     */
+    public int rootCount() {
+        return rootCount;
+    }
+
+    /**
+     * @param rootIndex index in [0, {@link #rootCount()})
+     * @return the node index of the {@code rootIndex}-th root
+     */
+    public int root(int rootIndex) {
+        if (rootIndex < 0 || rootIndex >= rootCount) {
+            throw new IndexOutOfBoundsException(String.format("rootIndex(%s) out of [0, %s)", rootIndex, rootCount));
+        }
+        return tableBuffer.getInt((int) rootTableStart(size) + rootIndex * Integer.BYTES);
+    }
+
+    /**
+     * decodes the payload on each call, nothing is cached
+     *
+     * @param index node index
+     * @return the payload decoded
+     */
+    public DataType data(int index) {
+        return decoder.apply(payload(index));
+    }
+
+    /**
+     * @param index node index
+     * @return the serialized payload
+     */
+    public byte[] payload(int index) {
+        int offsetPosition = offsetTableStart() + checkIndex(index) * Long.BYTES;
+        long start = tableBuffer.getLong(offsetPosition);
+        long end = tableBuffer.getLong(offsetPosition + Long.BYTES);
+        byte[] payload = new byte[(int) (end - start)];
+        int copied = 0;
+        while (copied < payload.length) {
+            long position = start + copied;
+            ByteBuffer chunk = payloadChunkArray[(int) (position / chunkSize)].duplicate();
+            chunk.position((int) (position % chunkSize));
+            int length = Math.min(payload.length - copied, chunk.remaining());
+            chunk.get(payload, copied, length);
+            copied += length;
+        }
+        return payload;
+    }
+
+    /**
+     * @param index node index
+     * @return parent node index, or {@link #NONE} for a root
+     */
+    public int parent(int index) {
+        return tableBuffer.getInt(HEADER_SIZE + checkIndex(index) * Integer.BYTES);
+    }
+
+    /**
+     * @param index node index
+     * @return the exclusive end of the node index range of the subtree
+     */
+    public int subtreeEnd(int index) {
+        return tableBuffer.getInt(HEADER_SIZE + (size + checkIndex(index)) * Integer.BYTES);
+    }
+
+    public int subtreeSize(int index) {
+        return subtreeEnd(index) - index;
+    }
+
+    /**
+     * @param index node index
+     * @return depth of the node, which is 0 for a root
+     */
+    public int depth(int index) {
+        return tableBuffer.getInt(HEADER_SIZE + (2 * size + checkIndex(index)) * Integer.BYTES);
+    }
+
+    /**
+     * @param index node index
+     * @return index of the first child, or {@link #NONE} for a leaf
+     */
+    public int firstChild(int index) {
+        return index + 1 < subtreeEnd(index) ? index + 1 : NONE;
+    }
+
+    /**
+     * @param index node index
+     * @return index of the next sibling (the next root for a root), or {@link #NONE} for the last one
+     */
+    public int nextSibling(int index) {
+        int next = subtreeEnd(index);
+        int parent = parent(index);
+        int limit = NONE == parent ? size : subtreeEnd(parent);
+        return next < limit ? next : NONE;
+    }
+
+    /**
+     * @param ancestor   node index of the ancestor to test
+     * @param descendant node index of the descendant to test
+     * @return true if {@code ancestor} is a proper ancestor of {@code descendant}
+     */
+    public boolean isAncestor(int ancestor, int descendant) {
+        return ancestor < descendant && descendant < subtreeEnd(ancestor);
+    }
+
+    public void forEachPreOrder(int index, IntConsumer consumer) {
+        for (int current = index, end = subtreeEnd(index); current < end; current++) {
+            consumer.accept(current);
+        }
+    }
+
+    /**
+     * decodes the subtree into nodes, without recursion
+     *
+     * @param index node index of the subtree root
+     * @return root of the nodes decoded, which is a root even if the subtree root is not
+     */
+    @SuppressWarnings("unchecked")
+    public Node<DataType> subtree(int index) {
+        Node<DataType>[] nodeArray = new Node[subtreeSize(index)];
+        nodeArray[0] = new Node<>(data(index));
+        for (int current = index + 1; current < index + nodeArray.length; current++) {
+            Node<DataType> node = new Node<>(data(current));
+            nodeArray[parent(current) - index].addChild(node);
+            nodeArray[current - index] = node;
+        }
+        return nodeArray[0];
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(String.format("index(%s) out of [0, %s)", index, size));
+        }
+        return index;
+    }
+
+    private int offsetTableStart() {
+        return (int) rootTableStart(size) + rootCount * Integer.BYTES;
+    }
+
+    private static long rootTableStart(int size) {
+        return HEADER_SIZE + 3L * size * Integer.BYTES;
+    }
+
+    private static void putInt(FileChannel fileChannel, ByteBuffer buffer, int value) throws IOException {
+        if (buffer.remaining() < Integer.BYTES) {
+            flush(fileChannel, buffer);
+        }
+        buffer.putInt(value);
+    }
+
+    private static void flush(FileChannel fileChannel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        writeFully(fileChannel, buffer);
+        buffer.clear();
+    }
+
+    private static void writeFully(FileChannel fileChannel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            fileChannel.write(buffer);
+        }
+    }
+}
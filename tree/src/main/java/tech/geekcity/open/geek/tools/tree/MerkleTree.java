@@ -0,0 +1,308 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * <p>
+ * bottom-up hashes of every subtree of a {@link TreeSnapshot}, along with a diff against another version of the trees
+ * </p>
+ * <p>
+ * the hash of a node mixes its key and content hash with the hashes of its children in child order,
+ * computed by {@link SubtreeAggregator}, which folds the children of every node from left to right,
+ * so the result is the same no matter how many threads compute it.
+ * two subtrees with the same hash are taken as identical, and the diff skips them
+ * </p>
+ * <p>
+ * that is wrong with a chance of about 2^-64 only if the content hash function spreads the whole content over
+ * 64 bits, such as one built by {@link #hash(CharSequence)}, and the keys are strings, which are hashed the same way.
+ * a key of another type is hashed by its {@link Object#hashCode()}, which should match its equals;
+ * and a 32-bit hash such as {@link Object#hashCode()} widened to a long is no better than 2^-32,
+ * while two contents sharing it always collide, so it should not be used as the content hash
+ * </p>
+ * <p>
+ * {@link #diff(MerkleTree)} walks down from the roots of the newer trees and never enters a subtree
+ * whose hash is unchanged, so it costs time proportional to the changed nodes and their fan-outs,
+ * plus the number of roots, rather than the size of the trees
+ * </p>
+ *
+ * @author ben.wangz
+ */
+public class MerkleTree<DataType extends Serializable> {
+    private static final int NONE = TreeSnapshot.NONE;
+    private final TreeSnapshot<DataType> treeSnapshot;
+    private final Function<DataType, ?> keyFunction;
+    private final ToLongFunction<DataType> contentHashFunction;
+    private final long[] subtreeHashArray;
+    private final Map<Object, Integer> indexKeyed;
+
+    private MerkleTree(
+            TreeSnapshot<DataType> treeSnapshot,
+            Function<DataType, ?> keyFunction,
+            ToLongFunction<DataType> contentHashFunction,
+            int parallelism) {
+        this.treeSnapshot = treeSnapshot;
+        this.keyFunction = keyFunction;
+        this.contentHashFunction = contentHashFunction;
+        ToLongFunction<DataType> nodeHashFunction = data -> mix(
+                keyHash(keyFunction.apply(data)) + contentHashFunction.applyAsLong(data));
+        this.subtreeHashArray = parallelism > 1
+                ? SubtreeAggregator.aggregateLong(treeSnapshot, nodeHashFunction, MerkleTree::combine, parallelism)
+                : SubtreeAggregator.aggregateLong(treeSnapshot, nodeHashFunction, MerkleTree::combine);
+        this.indexKeyed = new HashMap<>(Math.max(16, (int) (treeSnapshot.size() / 0.75f) + 1));
+        for (int index = 0; index < treeSnapshot.size(); index++) {
+            Object key = key(index);
+            if (null != indexKeyed.putIfAbsent(key, index)) {
+                throw new IllegalArgumentException(String.format("duplicate key(%s) found", key));
+            }
+        }
+    }
+
+    /**
+     * @param treeSnapshot        trees to hash
+     * @param keyFunction         key identifying a node across versions, which should be unique
+     * @param contentHashFunction 64-bit hash of the content of a node, excluding its children
+     * @param parallelism         parallelism level of hashing, 1 to hash in the calling thread
+     * @param <DataType>          type of data
+     * @return hashes of the trees
+     * @throws IllegalArgumentException if any two nodes have the same key
+     */
+    public static <DataType extends Serializable> MerkleTree<DataType> of(
+            TreeSnapshot<DataType> treeSnapshot,
+            Function<DataType, ?> keyFunction,
+            ToLongFunction<DataType> contentHashFunction,
+            int parallelism) {
+        return new MerkleTree<>(treeSnapshot, keyFunction, contentHashFunction, parallelism);
+    }
+
+    /**
+     * keyed by {@link LinkableDataType#id()}
+     *
+     * @param rootList            root node list, usually returned by {@link TreeConstructor#treeList()}
+     * @param contentHashFunction 64-bit hash of the content of a node, excluding its children,
+     *                            such as {@code data -> MerkleTree.hash(data.name())}
+     * @param parallelism         parallelism level of hashing, 1 to hash in the calling thread
+     * @param <DataType>          type of data
+     * @return hashes of a snapshot of the trees
+     */
+    public static <DataType extends LinkableDataType> MerkleTree<DataType> of(
+            List<Node<DataType>> rootList,
+            ToLongFunction<DataType> contentHashFunction,
+            int parallelism) {
+        return new MerkleTree<>(TreeSnapshot.freeze(rootList), LinkableDataType::id, contentHashFunction, parallelism);
+    }
+
+    /**
+     * FNV-1a over the characters, spread by the finalizer of SplitMix64
+     *
+     * @param value characters to hash, null is hashed as empty
+     * @return 64-bit hash of the characters, for building content hash functions
+     */
+    public static long hash(CharSequence value) {
+        long hash = 0xcbf29ce484222325L;
+        if (null != value) {
+            for (int index = 0; index < value.length(); index++) {
+                hash = (hash ^ value.charAt(index)) * 0x100000001b3L;
+            }
+        }
+        return mix(hash);
+    }
+
+    public TreeSnapshot<DataType> treeSnapshot() {
+        return treeSnapshot;
+    }
+
+    /**
+     * @param index node index
+     * @return hash of the subtree of the node
+     */
+    public long subtreeHash(int index) {
+        return subtreeHashArray[index];
+    }
+
+    /**
+     * @param key key of the node
+     * @return node index, or {@link TreeSnapshot#NONE} if not found
+     */
+    public int indexOf(Object key) {
+        Integer index = indexKeyed.get(key);
+        return null == index ? NONE : index;
+    }
+
+    /**
+     * <p>
+     * nodes are matched by key, and a node moved to another parent is reported once as {@link Change.Type#MOVED},
+     * followed by {@link Change.Type#CHANGED} if its content changed too; its subtree is not reported as moved.
+     * reordering the children of a node reports nothing
+     * </p>
+     * <p>
+     * the changes come in the pre-order of the newer trees, where the children removed from a node follow it,
+     * and at last come the nodes removed along with an old root
+     * </p>
+     *
+     * @param newer newer version of the trees, hashed by the same functions
+     * @return changes from this version to the newer one
+     */
+    public List<Change<DataType>> diff(MerkleTree<DataType> newer) {
+        List<Change<DataType>> changeList = new ArrayList<>();
+        TreeSnapshot<DataType> newerSnapshot = newer.treeSnapshot;
+        int[] stack = new int[16];
+        int stackSize = 0;
+        for (int rootIndex = newerSnapshot.rootCount() - 1; rootIndex >= 0; rootIndex--) {
+            stack = IntArrayUtils.ensureCapacity(stack, stackSize + 1);
+            stack[stackSize++] = newerSnapshot.root(rootIndex);
+        }
+        while (stackSize > 0) {
+            int newerIndex = stack[--stackSize];
+            DataType newerData = newerSnapshot.data(newerIndex);
+            int index = indexOf(newer.key(newerIndex));
+            if (NONE == index) {
+                changeList.add(new Change<>(Change.Type.ADDED, newer.key(newerIndex), null, newerData));
+            } else {
+                DataType data = treeSnapshot.data(index);
+                if (!Objects.equals(parentKey(index), newer.parentKey(newerIndex))) {
+                    changeList.add(new Change<>(Change.Type.MOVED, key(index), data, newerData));
+                }
+                if (subtreeHashArray[index] == newer.subtreeHashArray[newerIndex]) {
+                    continue;
+                }
+                if (contentHashFunction.applyAsLong(data) != newer.contentHashFunction.applyAsLong(newerData)) {
+                    changeList.add(new Change<>(Change.Type.CHANGED, key(index), data, newerData));
+                }
+                for (int child = treeSnapshot.firstChild(index);
+                     NONE != child;
+                     child = treeSnapshot.nextSibling(child)) {
+                    collectRemoved(child, newer, changeList);
+                }
+            }
+            int childCount = 0;
+            for (int child = newerSnapshot.firstChild(newerIndex);
+                 NONE != child;
+                 child = newerSnapshot.nextSibling(child)) {
+                stack = IntArrayUtils.ensureCapacity(stack, stackSize + 1);
+                stack[stackSize++] = child;
+                childCount++;
+            }
+            // pop the first child first, so the changes come in pre-order
+            IntArrayUtils.reverse(stack, stackSize - childCount, stackSize);
+        }
+        for (int rootIndex = 0; rootIndex < treeSnapshot.rootCount(); rootIndex++) {
+            collectRemoved(treeSnapshot.root(rootIndex), newer, changeList);
+        }
+        return changeList;
+    }
+
+    /**
+     * reports the nodes of the subtree gone from the newer version,
+     * skipping the subtrees still there, which are visited from their newer positions
+     */
+    private void collectRemoved(int index, MerkleTree<DataType> newer, List<Change<DataType>> changeList) {
+        int[] stack = {index};
+        int stackSize = 1;
+        while (stackSize > 0) {
+            int current = stack[--stackSize];
+            if (NONE != newer.indexOf(key(current))) {
+                continue;
+            }
+            changeList.add(new Change<>(Change.Type.REMOVED, key(current), treeSnapshot.data(current), null));
+            int childCount = 0;
+            for (int child = treeSnapshot.firstChild(current);
+                 NONE != child;
+                 child = treeSnapshot.nextSibling(child)) {
+                stack = IntArrayUtils.ensureCapacity(stack, stackSize + 1);
+                stack[stackSize++] = child;
+                childCount++;
+            }
+            IntArrayUtils.reverse(stack, stackSize - childCount, stackSize);
+        }
+    }
+
+    private Object key(int index) {
+        return keyFunction.apply(treeSnapshot.data(index));
+    }
+
+    private Object parentKey(int index) {
+        int parent = treeSnapshot.parent(index);
+        return NONE == parent ? null : key(parent);
+    }
+
+    private static long keyHash(Object key) {
+        return key instanceof CharSequence ? hash((CharSequence) key) : mix(Objects.hashCode(key));
+    }
+
+    /**
+     * order sensitive, so that swapping two children changes the hash
+     */
+    private static long combine(long hash, long childHash) {
+        return mix(hash * 0x9e3779b97f4a7c15L + childHash);
+    }
+
+    /**
+     * finalizer of SplitMix64, spreading every input bit over the output
+     */
+    private static long mix(long value) {
+        long mixed = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        mixed = (mixed ^ (mixed >>> 27)) * 0x94d049bb133111ebL;
+        return mixed ^ (mixed >>> 31);
+    }
+
+    public static class Change<DataType extends Serializable> {
+        public enum Type {
+            ADDED,
+            REMOVED,
+            /**
+             * moved to another parent, or became a root, or stopped being one
+             */
+            MOVED,
+            /**
+             * content changed, regardless of the children
+             */
+            CHANGED
+        }
+
+        private final Type type;
+        private final Object key;
+        private final DataType oldData;
+        private final DataType newData;
+
+        private Change(Type type, Object key, DataType oldData, DataType newData) {
+            this.type = type;
+            this.key = key;
+            this.oldData = oldData;
+            this.newData = newData;
+        }
+
+        public Type type() {
+            return type;
+        }
+
+        public Object key() {
+            return key;
+        }
+
+        /**
+         * @return the data of the older version, null if {@link Type#ADDED}
+         */
+        public DataType oldData() {
+            return oldData;
+        }
+
+        /**
+         * @return the data of the newer version, null if {@link Type#REMOVED}
+         */
+        public DataType newData() {
+            return newData;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s(%s)", type, key);
+        }
+    }
+}
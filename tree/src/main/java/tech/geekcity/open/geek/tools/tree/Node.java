@@ -1,30 +1,87 @@
 package tech.geekcity.open.geek.tools.tree;
 
 import java.io.Serializable;
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
+ * <p>
+ * the children are kept in a bare array, which is null for a leaf and starts with {@value #INITIAL_CHILD_CAPACITY}
+ * slots for the first child, so the leaves, usually most of the nodes, carry no container at all
+ * </p>
+ * <p>
+ * {@link #children()} is a mutable view over the array instead of the list the children used to be kept in,
+ * whose changes link and unlink the children just like {@link #addChild(Node)} does;
+ * loops over the children should prefer {@link #childCount()} and {@link #child(int)}, which allocate no view
+ * </p>
+ *
  * @author ben.wangz
  */
 public class Node<DataType extends Serializable> implements Serializable {
+    private static final int INITIAL_CHILD_CAPACITY = 2;
     private DataType data;
     private Node<DataType> parent;
-    private List<Node<DataType>> children;
+    private Node<DataType>[] childArray;
+    private int childCount;
 
     public Node(DataType data) {
         this.data = data;
         this.parent = null;
-        this.children = new ArrayList<>();
     }
 
     public Node addChild(Node<DataType> child) {
-        children.add(child);
+        ensureChildCapacity(childCount + 1);
+        childArray[childCount++] = child;
         child.parent = this;
         return this;
     }
 
+    void removeChild(Node<DataType> child) {
+        for (int index = 0; index < childCount; index++) {
+            if (childArray[index] == child) {
+                removeChild(index);
+                return;
+            }
+        }
+        child.parent = null;
+    }
+
+    private Node<DataType> removeChild(int index) {
+        Node<DataType> child = child(index);
+        System.arraycopy(childArray, index + 1, childArray, index, childCount - index - 1);
+        childArray[--childCount] = null;
+        if (0 == childCount) {
+            childArray = null;
+        }
+        child.parent = null;
+        return child;
+    }
+
+    /**
+     * grows the children array to hold at least {@code capacity} children,
+     * which lets a builder knowing the fan-out allocate the exact size once
+     *
+     * @param capacity number of children to hold
+     */
+    @SuppressWarnings("unchecked")
+    void ensureChildCapacity(int capacity) {
+        if (null == childArray) {
+            if (capacity > 0) {
+                childArray = new Node[Math.max(capacity, INITIAL_CHILD_CAPACITY)];
+            }
+        } else if (capacity > childArray.length) {
+            childArray = Arrays.copyOf(childArray, Math.max(capacity, childArray.length << 1));
+        }
+    }
+
     public boolean root() {
         return null == parent;
     }
@@ -33,8 +90,29 @@ public class Node<DataType extends Serializable> implements Serializable {
         return parent;
     }
 
+    /**
+     * a new view is allocated on every call, hot loops should use {@link #childCount()} and {@link #child(int)}
+     *
+     * @return view of the children, which reflects the children added or removed later,
+     * and sets or clears the parent of the children added, set or removed through it
+     */
     public List<Node<DataType>> children() {
-        return children;
+        return new ChildList();
+    }
+
+    public int childCount() {
+        return childCount;
+    }
+
+    /**
+     * @param index index of the child, in [0, {@link #childCount()})
+     * @return the child at the index
+     */
+    public Node<DataType> child(int index) {
+        if (index < 0 || index >= childCount) {
+            throw new IndexOutOfBoundsException(String.format("index(%s) out of [0, %s)", index, childCount));
+        }
+        return childArray[index];
     }
 
     public DataType data() {
@@ -47,15 +125,165 @@ public class Node<DataType extends Serializable> implements Serializable {
 
             @Override
             public boolean hasNext() {
-                boolean hasNext = !currentNode.root();
-                currentNode = currentNode.parent();
-                return hasNext;
+                return !currentNode.root();
             }
 
             @Override
             public Node<DataType> next() {
+                if (currentNode.root()) {
+                    throw new NoSuchElementException();
+                }
+                currentNode = currentNode.parent();
                 return currentNode;
             }
         };
     }
-}
\ No newline at end of file
+
+    /**
+     * iterative, safe for deep trees
+     *
+     * @return pre-order iterator over the subtree of this node
+     */
+    public Iterator<Node<DataType>> preOrderIterator() {
+        return new Iterator<Node<DataType>>() {
+            private final Deque<Node<DataType>> stack = new ArrayDeque<>(Arrays.asList(Node.this));
+
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+
+            @Override
+            public Node<DataType> next() {
+                if (stack.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Node<DataType> node = stack.pop();
+                for (int index = node.childCount - 1; index >= 0; index--) {
+                    stack.push(node.childArray[index]);
+                }
+                return node;
+            }
+        };
+    }
+
+    /**
+     * iterative, safe for deep trees
+     *
+     * @return post-order iterator over the subtree of this node
+     */
+    public Iterator<Node<DataType>> postOrderIterator() {
+        return new Iterator<Node<DataType>>() {
+            private final Deque<Node<DataType>> stack = new ArrayDeque<>(Arrays.asList(Node.this));
+            // index of the next child to visit for each node in the stack
+            private int[] childIndexStack = new int[16];
+
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+
+            @Override
+            public Node<DataType> next() {
+                if (stack.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                while (true) {
+                    Node<DataType> node = stack.peek();
+                    int top = stack.size() - 1;
+                    if (childIndexStack[top] == node.childCount) {
+                        stack.pop();
+                        return node;
+                    }
+                    Node<DataType> child = node.childArray[childIndexStack[top]++];
+                    if (childIndexStack.length == stack.size()) {
+                        childIndexStack = Arrays.copyOf(childIndexStack, childIndexStack.length << 1);
+                    }
+                    childIndexStack[stack.size()] = 0;
+                    stack.push(child);
+                }
+            }
+        };
+    }
+
+    /**
+     * @return breadth-first iterator over the subtree of this node
+     */
+    public Iterator<Node<DataType>> levelOrderIterator() {
+        return new Iterator<Node<DataType>>() {
+            private final Deque<Node<DataType>> queue = new ArrayDeque<>(Arrays.asList(Node.this));
+
+            @Override
+            public boolean hasNext() {
+                return !queue.isEmpty();
+            }
+
+            @Override
+            public Node<DataType> next() {
+                if (queue.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Node<DataType> node = queue.poll();
+                for (int index = 0; index < node.childCount; index++) {
+                    queue.add(node.childArray[index]);
+                }
+                return node;
+            }
+        };
+    }
+
+    /**
+     * @return sequential stream of the subtree of this node in pre-order
+     */
+    public Stream<Node<DataType>> stream() {
+        return StreamSupport.stream(new NodeSpliterator<>(this), false);
+    }
+
+    /**
+     * the spliterator hands whole subtrees over to different workers
+     *
+     * @return parallel stream of the subtree of this node, in pre-order if ordered
+     */
+    public Stream<Node<DataType>> parallelStream() {
+        return StreamSupport.stream(new NodeSpliterator<>(this), true);
+    }
+
+    private class ChildList extends AbstractList<Node<DataType>> implements RandomAccess {
+        @Override
+        public Node<DataType> get(int index) {
+            return child(index);
+        }
+
+        @Override
+        public int size() {
+            return childCount;
+        }
+
+        @Override
+        public Node<DataType> set(int index, Node<DataType> child) {
+            Node<DataType> previous = child(index);
+            childArray[index] = child;
+            previous.parent = null;
+            child.parent = Node.this;
+            return previous;
+        }
+
+        @Override
+        public void add(int index, Node<DataType> child) {
+            if (index < 0 || index > childCount) {
+                throw new IndexOutOfBoundsException(String.format("index(%s) out of [0, %s]", index, childCount));
+            }
+            addChild(child);
+            System.arraycopy(childArray, index, childArray, index + 1, childCount - 1 - index);
+            childArray[index] = child;
+            modCount++;
+        }
+
+        @Override
+        public Node<DataType> remove(int index) {
+            Node<DataType> child = removeChild(index);
+            modCount++;
+            return child;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * <p>
+ * compact binary codec of trees of {@link Node}, which never recurses, so deep trees are fine
+ * </p>
+ * <p>
+ * the format is a header, the number of nodes, the child counts of all the nodes in pre-order as var ints,
+ * then the payloads in pre-order, one after another.
+ * the parent links are implied by the child counts and rebuilt on read,
+ * so no node, list or parent reference goes into the stream
+ * </p>
+ * <p>
+ * the default serialization of {@link Node} is left as is,
+ * since {@link TreeConstructor} keeps nodes of unfinished trees and relies on their identities being serialized;
+ * wrap the trees with {@link TreeList} to get this format as a field of a {@link Serializable} object
+ * </p>
+ *
+ * @author ben.wangz
+ */
+public class NodeCodec {
+    private static final int MAGIC = 0x4e4f4445;
+    private static final byte VERSION = 1;
+
+    private NodeCodec() {
+    }
+
+    /**
+     * @param rootList     roots of the trees to write, usually returned by {@link TreeConstructor#treeList()}
+     * @param objectOutput output to write to, whose payloads are written by {@link ObjectOutput#writeObject(Object)}
+     * @param <DataType>   type of data
+     * @throws IOException if the output fails
+     */
+    public static <DataType extends Serializable> void write(
+            List<Node<DataType>> rootList,
+            ObjectOutput objectOutput) throws IOException {
+        List<Node<DataType>> nodeList = new ArrayList<>();
+        for (Node<DataType> root : rootList) {
+            for (Iterator<Node<DataType>> iterator = root.preOrderIterator(); iterator.hasNext(); ) {
+                nodeList.add(iterator.next());
+            }
+        }
+        objectOutput.writeInt(MAGIC);
+        objectOutput.writeByte(VERSION);
+        objectOutput.writeInt(rootList.size());
+        objectOutput.writeInt(nodeList.size());
+        for (Node<DataType> node : nodeList) {
+            writeVarInt(objectOutput, node.childCount());
+        }
+        for (Node<DataType> node : nodeList) {
+            objectOutput.writeObject(node.data());
+        }
+    }
+
+    /**
+     * @param objectInput input to read from, which is written by {@link #write(List, ObjectOutput)}
+     * @param <DataType>  type of data
+     * @return roots of the trees read
+     * @throws IOException            if the input fails or is not in this format
+     * @throws ClassNotFoundException if the class of a payload is not found
+     */
+    @SuppressWarnings("unchecked")
+    public static <DataType extends Serializable> List<Node<DataType>> read(
+            ObjectInput objectInput) throws IOException, ClassNotFoundException {
+        int magic = objectInput.readInt();
+        byte version = objectInput.readByte();
+        if (MAGIC != magic || VERSION != version) {
+            throw new StreamCorruptedException(String.format(
+                    "unknown header: magic(%s), version(%s)", Integer.toHexString(magic), version));
+        }
+        int rootCount = objectInput.readInt();
+        int size = objectInput.readInt();
+        int[] childCountArray = new int[size];
+        for (int index = 0; index < size; index++) {
+            childCountArray[index] = readVarInt(objectInput);
+        }
+        List<Node<DataType>> rootList = new ArrayList<>(rootCount);
+        // nodes still waiting for children, along with the number of children left
+        Deque<Node<DataType>> parentStack = new ArrayDeque<>();
+        int[] remainingStack = new int[16];
+        for (int index = 0; index < size; index++) {
+            Node<DataType> node = new Node<>((DataType) objectInput.readObject());
+            if (parentStack.isEmpty()) {
+                rootList.add(node);
+            } else {
+                parentStack.peek().addChild(node);
+                if (0 == --remainingStack[parentStack.size() - 1]) {
+                    parentStack.pop();
+                }
+            }
+            if (childCountArray[index] > 0) {
+                node.ensureChildCapacity(childCountArray[index]);
+                remainingStack = IntArrayUtils.ensureCapacity(remainingStack, parentStack.size() + 1);
+                remainingStack[parentStack.size()] = childCountArray[index];
+                parentStack.push(node);
+            }
+        }
+        if (rootCount != rootList.size() || !parentStack.isEmpty()) {
+            throw new StreamCorruptedException(String.format(
+                    "child counts mismatch: %s roots expected, %s roots read", rootCount, rootList.size()));
+        }
+        return rootList;
+    }
+
+    private static void writeVarInt(ObjectOutput objectOutput, int value) throws IOException {
+        int remaining = value;
+        while ((remaining & ~0x7f) != 0) {
+            objectOutput.writeByte((remaining & 0x7f) | 0x80);
+            remaining >>>= 7;
+        }
+        objectOutput.writeByte(remaining);
+    }
+
+    private static int readVarInt(ObjectInput objectInput) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte current = objectInput.readByte();
+            value |= (current & 0x7f) << shift;
+            if ((current & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("malformed var int");
+    }
+
+    /**
+     * {@link Serializable} holder of trees, which is serialized by {@link NodeCodec}
+     */
+    public static class TreeList<DataType extends Serializable> implements Serializable {
+        private transient List<Node<DataType>> rootList;
+
+        public TreeList(List<Node<DataType>> rootList) {
+            this.rootList = rootList;
+        }
+
+        public List<Node<DataType>> rootList() {
+            return rootList;
+        }
+
+        private void writeObject(ObjectOutputStream objectOutputStream) throws IOException {
+            objectOutputStream.defaultWriteObject();
+            write(rootList, objectOutputStream);
+        }
+
+        private void readObject(ObjectInputStream objectInputStream) throws IOException, ClassNotFoundException {
+            objectInputStream.defaultReadObject();
+            rootList = Collections.unmodifiableList(read(objectInputStream));
+        }
+    }
+}
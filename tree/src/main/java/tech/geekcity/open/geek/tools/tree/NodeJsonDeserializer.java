@@ -0,0 +1,133 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.deser.ContextualDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * <p>
+ * reads a {@link Node} from the nested json written by {@link NodeJsonSerializer}
+ * </p>
+ * <p>
+ * nodes are built straight from the parser tokens with a stack of unfinished nodes instead of the call stack,
+ * no intermediate tree model is read.
+ * the data is read by the deserializer of the type argument of {@code Node<DataType>},
+ * such as {@code new TypeReference<List<Node<Department>>>() {}}, or as untyped objects if it is unknown
+ * </p>
+ *
+ * @author ben.wangz
+ * @see NodeJsonModule
+ */
+@SuppressWarnings("rawtypes")
+public class NodeJsonDeserializer extends StdDeserializer<Node> implements ContextualDeserializer {
+    private final JsonDeserializer<Object> dataDeserializer;
+
+    public NodeJsonDeserializer() {
+        this(null);
+    }
+
+    private NodeJsonDeserializer(JsonDeserializer<Object> dataDeserializer) {
+        super(Node.class);
+        this.dataDeserializer = dataDeserializer;
+    }
+
+    @Override
+    public JsonDeserializer<?> createContextual(
+            DeserializationContext deserializationContext,
+            BeanProperty beanProperty) throws JsonMappingException {
+        JavaType nodeType = null != deserializationContext.getContextualType()
+                ? deserializationContext.getContextualType()
+                : null == beanProperty ? null : beanProperty.getType();
+        JavaType dataType = null == nodeType || null == nodeType.containedType(0)
+                ? deserializationContext.constructType(Object.class)
+                : nodeType.containedType(0);
+        return new NodeJsonDeserializer(
+                deserializationContext.findContextualValueDeserializer(dataType, beanProperty));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Node deserialize(JsonParser jsonParser, DeserializationContext deserializationContext)
+            throws IOException {
+        if (JsonToken.START_OBJECT != jsonParser.getCurrentToken()) {
+            throw JsonMappingException.from(jsonParser, String.format(
+                    "start of a node object expected, but %s found", jsonParser.getCurrentToken()));
+        }
+        Deque<PendingNode> pendingNodeStack = new ArrayDeque<>();
+        pendingNodeStack.push(new PendingNode());
+        while (true) {
+            JsonToken jsonToken = jsonParser.nextToken();
+            if (JsonToken.END_OBJECT == jsonToken) {
+                Node node = pendingNodeStack.pop().toNode();
+                if (pendingNodeStack.isEmpty()) {
+                    return node;
+                }
+                pendingNodeStack.peek().children.add(node);
+                // the next sibling or the end of the children array
+                startChild(jsonParser, pendingNodeStack);
+                continue;
+            }
+            if (JsonToken.FIELD_NAME != jsonToken) {
+                throw JsonMappingException.from(jsonParser, String.format(
+                        "field name or end of a node object expected, but %s found", jsonToken));
+            }
+            String fieldName = jsonParser.getCurrentName();
+            jsonToken = jsonParser.nextToken();
+            if (NodeJsonSerializer.DATA.equals(fieldName)) {
+                pendingNodeStack.peek().data = (Serializable) (JsonToken.VALUE_NULL == jsonToken
+                        ? dataDeserializer.getNullValue(deserializationContext)
+                        : dataDeserializer.deserialize(jsonParser, deserializationContext));
+            } else if (NodeJsonSerializer.CHILDREN.equals(fieldName)) {
+                if (JsonToken.START_ARRAY != jsonToken) {
+                    throw JsonMappingException.from(jsonParser, String.format(
+                            "array of children expected, but %s found", jsonToken));
+                }
+                startChild(jsonParser, pendingNodeStack);
+            } else {
+                deserializationContext.handleUnknownProperty(jsonParser, this, Node.class, fieldName);
+            }
+        }
+    }
+
+    /**
+     * moves to the next element of a children array, which is pushed if it is a node object
+     */
+    private static void startChild(JsonParser jsonParser, Deque<PendingNode> pendingNodeStack) throws IOException {
+        JsonToken jsonToken = jsonParser.nextToken();
+        if (JsonToken.START_OBJECT == jsonToken) {
+            pendingNodeStack.push(new PendingNode());
+        } else if (JsonToken.END_ARRAY != jsonToken) {
+            throw JsonMappingException.from(jsonParser, String.format(
+                    "node object or end of children expected, but %s found", jsonToken));
+        }
+    }
+
+    /**
+     * the fields of a node object may come in any order, so the node is made at the end of the object
+     */
+    private static class PendingNode {
+        private Serializable data;
+        private final List<Node> children = new ArrayList<>();
+
+        @SuppressWarnings("unchecked")
+        private Node toNode() {
+            Node node = new Node(data);
+            node.ensureChildCapacity(children.size());
+            children.forEach(node::addChild);
+            return node;
+        }
+    }
+}
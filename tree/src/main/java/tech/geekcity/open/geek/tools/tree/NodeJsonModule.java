@@ -0,0 +1,19 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+/**
+ * <p>
+ * jackson module streaming {@link Node} as nested json, register it by
+ * {@code objectMapper.registerModule(new NodeJsonModule())}
+ * </p>
+ *
+ * @author ben.wangz
+ */
+public class NodeJsonModule extends SimpleModule {
+    public NodeJsonModule() {
+        super(NodeJsonModule.class.getSimpleName());
+        addSerializer(Node.class, new NodeJsonSerializer());
+        addDeserializer(Node.class, new NodeJsonDeserializer());
+    }
+}
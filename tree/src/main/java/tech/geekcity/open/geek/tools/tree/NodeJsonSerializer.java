@@ -0,0 +1,71 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * writes a {@link Node} as nested json, such as {@code {"data":...,"children":[{"data":...,"children":[]}]}}
+ * </p>
+ * <p>
+ * the tree is walked with a stack of nodes and their next child indexes instead of the call stack,
+ * every node goes to the {@link JsonGenerator} as soon as it is visited, no intermediate maps or lists
+ * </p>
+ *
+ * @author ben.wangz
+ * @see NodeJsonModule
+ */
+@SuppressWarnings("rawtypes")
+public class NodeJsonSerializer extends StdSerializer<Node> {
+    static final String DATA = "data";
+    static final String CHILDREN = "children";
+
+    public NodeJsonSerializer() {
+        super(Node.class);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void serialize(Node node, JsonGenerator jsonGenerator, SerializerProvider serializerProvider)
+            throws IOException {
+        Node[] nodeStack = new Node[16];
+        int[] nextChildStack = new int[16];
+        int stackSize = 0;
+        writeStart(node, jsonGenerator, serializerProvider);
+        nodeStack[stackSize++] = node;
+        while (stackSize > 0) {
+            int top = stackSize - 1;
+            Node parent = nodeStack[top];
+            if (nextChildStack[top] < parent.childCount()) {
+                Node child = parent.child(nextChildStack[top]++);
+                writeStart(child, jsonGenerator, serializerProvider);
+                if (stackSize == nodeStack.length) {
+                    nodeStack = Arrays.copyOf(nodeStack, stackSize << 1);
+                    nextChildStack = Arrays.copyOf(nextChildStack, stackSize << 1);
+                }
+                nodeStack[stackSize] = child;
+                nextChildStack[stackSize] = 0;
+                stackSize++;
+            } else {
+                nodeStack[--stackSize] = null;
+                jsonGenerator.writeEndArray();
+                jsonGenerator.writeEndObject();
+            }
+        }
+    }
+
+    /**
+     * writes the node until its children array is started
+     */
+    private static void writeStart(Node node, JsonGenerator jsonGenerator, SerializerProvider serializerProvider)
+            throws IOException {
+        jsonGenerator.writeStartObject();
+        jsonGenerator.writeFieldName(DATA);
+        serializerProvider.defaultSerializeValue(node.data(), jsonGenerator);
+        jsonGenerator.writeArrayFieldStart(CHILDREN);
+    }
+}
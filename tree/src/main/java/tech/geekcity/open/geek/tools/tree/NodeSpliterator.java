@@ -0,0 +1,119 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * pre-order spliterator over the nodes of a subtree
+ * </p>
+ * <p>
+ * the pending subtrees are kept in a stack instead of the call stack,
+ * and {@link #trySplit()} hands whole pending subtrees over to another spliterator,
+ * so different workers of a parallel stream walk different subtrees
+ * </p>
+ *
+ * @author ben.wangz
+ */
+class NodeSpliterator<DataType extends Serializable> implements Spliterator<Node<DataType>> {
+    // nodes to emit before the pending subtrees, without their children
+    private final Deque<Node<DataType>> singleQueue;
+    // pending subtrees, the first one is the next one in pre-order
+    private final Deque<Node<DataType>> subtreeStack;
+    // the size is unknown, halved on each split like the spliterators of unknown size in JDK
+    private long estimatedSize;
+
+    NodeSpliterator(Node<DataType> root) {
+        this(new ArrayDeque<>(), new ArrayDeque<>(), Long.MAX_VALUE);
+        subtreeStack.push(root);
+    }
+
+    private NodeSpliterator(
+            Deque<Node<DataType>> singleQueue,
+            Deque<Node<DataType>> subtreeStack,
+            long estimatedSize) {
+        this.singleQueue = singleQueue;
+        this.subtreeStack = subtreeStack;
+        this.estimatedSize = estimatedSize;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Node<DataType>> action) {
+        if (!singleQueue.isEmpty()) {
+            action.accept(singleQueue.poll());
+            return true;
+        }
+        if (subtreeStack.isEmpty()) {
+            return false;
+        }
+        Node<DataType> node = subtreeStack.pop();
+        pushChildren(node);
+        action.accept(node);
+        return true;
+    }
+
+    @Override
+    public Spliterator<Node<DataType>> trySplit() {
+        if (1 == subtreeStack.size()) {
+            return unfold();
+        }
+        if (subtreeStack.isEmpty()) {
+            return null;
+        }
+        // the prefix goes to the new spliterator to keep the encounter order
+        Deque<Node<DataType>> prefixStack = new ArrayDeque<>();
+        for (int count = subtreeStack.size() / 2; count > 0; count--) {
+            prefixStack.addLast(subtreeStack.pop());
+        }
+        Deque<Node<DataType>> prefixSingleQueue = new ArrayDeque<>(singleQueue);
+        singleQueue.clear();
+        long prefixEstimatedSize = estimatedSize >>> 1;
+        estimatedSize -= prefixEstimatedSize;
+        return new NodeSpliterator<>(prefixSingleQueue, prefixStack, prefixEstimatedSize);
+    }
+
+    @Override
+    public long estimateSize() {
+        return estimatedSize;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+
+    /**
+     * split the only pending subtree into the path down to its first node with more than one child,
+     * which is emitted by the prefix spliterator, and the subtrees of the children of that node
+     *
+     * @return the prefix spliterator, or null if the subtree is a chain
+     */
+    private Spliterator<Node<DataType>> unfold() {
+        Node<DataType> node = subtreeStack.peek();
+        while (1 == node.childCount()) {
+            node = node.child(0);
+        }
+        if (0 == node.childCount()) {
+            return null;
+        }
+        Deque<Node<DataType>> prefixSingleQueue = new ArrayDeque<>(singleQueue);
+        singleQueue.clear();
+        for (Node<DataType> pathNode = subtreeStack.pop(); ; pathNode = pathNode.child(0)) {
+            prefixSingleQueue.add(pathNode);
+            if (pathNode == node) {
+                break;
+            }
+        }
+        pushChildren(node);
+        return new NodeSpliterator<>(prefixSingleQueue, new ArrayDeque<>(), prefixSingleQueue.size());
+    }
+
+    private void pushChildren(Node<DataType> node) {
+        for (int index = node.childCount() - 1; index >= 0; index--) {
+            subtreeStack.push(node.child(index));
+        }
+    }
+}
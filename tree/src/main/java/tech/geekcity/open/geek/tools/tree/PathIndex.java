@@ -0,0 +1,216 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.function.Function;
+
+/**
+ * <p>
+ * materialized path index over a {@link TreeSnapshot}, resolving paths such as {@code root/eu/de/berlin} to nodes
+ * </p>
+ * <p>
+ * a path is the labels of the nodes from a root down to the node, where the label of a node is given by a function,
+ * such as {@link LinkableDataType#id()} for {@link #byId(TreeSnapshot)}.
+ * every node with children keeps a hash map from the labels of its children to their node indexes,
+ * so a lookup costs O(path length) regardless of the fan-out,
+ * and everything under a path is the contiguous pre-order range of its node, which is listed without walking
+ * </p>
+ * <p>
+ * labels should be unique among siblings (and among roots), otherwise a path would be ambiguous
+ * </p>
+ *
+ * @author ben.wangz
+ */
+public class PathIndex<DataType extends Serializable> {
+    public static final int NONE = TreeSnapshot.NONE;
+    private final TreeSnapshot<DataType> treeSnapshot;
+    private final Function<DataType, String> labelFunction;
+    private final Map<String, Integer> rootIndexLabelKeyed;
+    // null for the leaves, which are usually most of the nodes
+    private final Map<String, Integer>[] childIndexLabelKeyedArray;
+
+    @SuppressWarnings("unchecked")
+    private PathIndex(TreeSnapshot<DataType> treeSnapshot, Function<DataType, String> labelFunction) {
+        this.treeSnapshot = treeSnapshot;
+        this.labelFunction = labelFunction;
+        this.rootIndexLabelKeyed = new HashMap<>();
+        this.childIndexLabelKeyedArray = new Map[treeSnapshot.size()];
+        for (int index = 0; index < treeSnapshot.size(); index++) {
+            int parent = treeSnapshot.parent(index);
+            Map<String, Integer> indexLabelKeyed;
+            if (NONE == parent) {
+                indexLabelKeyed = rootIndexLabelKeyed;
+            } else {
+                if (null == childIndexLabelKeyedArray[parent]) {
+                    childIndexLabelKeyedArray[parent] = new HashMap<>();
+                }
+                indexLabelKeyed = childIndexLabelKeyedArray[parent];
+            }
+            String label = labelFunction.apply(treeSnapshot.data(index));
+            Integer sibling = indexLabelKeyed.putIfAbsent(label, index);
+            if (null != sibling) {
+                throw new IllegalArgumentException(String.format(
+                        "duplicate label(%s) found at path(%s)", label, path(index)));
+            }
+        }
+    }
+
+    /**
+     * @param treeSnapshot  trees to index
+     * @param labelFunction label of a node, which should be unique among its siblings
+     * @param <DataType>    type of data
+     * @return the path index
+     * @throws IllegalArgumentException if any two siblings have the same label
+     */
+    public static <DataType extends Serializable> PathIndex<DataType> of(
+            TreeSnapshot<DataType> treeSnapshot,
+            Function<DataType, String> labelFunction) {
+        return new PathIndex<>(treeSnapshot, labelFunction);
+    }
+
+    /**
+     * @param rootList      root node list, usually returned by {@link TreeConstructor#treeList()}
+     * @param labelFunction label of a node, which should be unique among its siblings
+     * @param <DataType>    type of data
+     * @return the path index over a snapshot of the trees
+     * @throws IllegalArgumentException if any two siblings have the same label
+     */
+    public static <DataType extends Serializable> PathIndex<DataType> of(
+            List<Node<DataType>> rootList,
+            Function<DataType, String> labelFunction) {
+        return new PathIndex<>(TreeSnapshot.freeze(rootList), labelFunction);
+    }
+
+    /**
+     * @param treeSnapshot trees to index, whose ids are unique as required by {@link TreeConstructor}
+     * @param <DataType>   type of data
+     * @return the path index of id paths
+     */
+    public static <DataType extends LinkableDataType> PathIndex<DataType> byId(TreeSnapshot<DataType> treeSnapshot) {
+        return new PathIndex<>(treeSnapshot, LinkableDataType::id);
+    }
+
+    public TreeSnapshot<DataType> treeSnapshot() {
+        return treeSnapshot;
+    }
+
+    /**
+     * @param labelPath labels from a root down to the node
+     * @return node index of the path, or {@link #NONE} if not found or the path is empty
+     */
+    public int find(List<String> labelPath) {
+        if (labelPath.isEmpty()) {
+            return NONE;
+        }
+        Integer index = rootIndexLabelKeyed.get(labelPath.get(0));
+        for (int depth = 1; depth < labelPath.size() && null != index; depth++) {
+            Map<String, Integer> childIndexLabelKeyed = childIndexLabelKeyedArray[index];
+            index = null == childIndexLabelKeyed ? null : childIndexLabelKeyed.get(labelPath.get(depth));
+        }
+        return null == index ? NONE : index;
+    }
+
+    /**
+     * @param path      labels joined by the separator, such as {@code root/eu/de/berlin}
+     * @param separator separator of the labels, which should never show up in any label
+     * @return node index of the path, or {@link #NONE} if not found
+     */
+    public int find(String path, String separator) {
+        return find(split(path, separator));
+    }
+
+    /**
+     * @param index node index
+     * @return labels from the root down to the node, which costs O(depth)
+     */
+    public List<String> path(int index) {
+        List<String> labelPath = new ArrayList<>(treeSnapshot.depth(index) + 1);
+        for (int current = index; NONE != current; current = treeSnapshot.parent(current)) {
+            labelPath.add(labelFunction.apply(treeSnapshot.data(current)));
+        }
+        Collections.reverse(labelPath);
+        return labelPath;
+    }
+
+    /**
+     * @param labelPath labels from a root down to the node
+     * @return data of the node, or null if not found
+     */
+    public DataType data(List<String> labelPath) {
+        int index = find(labelPath);
+        return NONE == index ? null : treeSnapshot.data(index);
+    }
+
+    /**
+     * @param labelPath labels from a root down to the node
+     * @return unmodifiable view of the data of the node and all its descendants in pre-order,
+     * which is empty if the path is not found
+     */
+    public List<DataType> subtree(List<String> labelPath) {
+        int index = find(labelPath);
+        return NONE == index ? Collections.emptyList() : subtree(index);
+    }
+
+    /**
+     * @param index node index
+     * @return unmodifiable view of the data of the node and all its descendants in pre-order,
+     * backed by the pre-order range [{@code index}, {@link TreeSnapshot#subtreeEnd(int)})
+     */
+    public List<DataType> subtree(int index) {
+        return new RangeList<>(treeSnapshot, index, treeSnapshot.subtreeEnd(index));
+    }
+
+    /**
+     * @param index node index
+     * @return unmodifiable view of the data of the descendants in pre-order, excluding the node itself
+     */
+    public List<DataType> descendants(int index) {
+        return new RangeList<>(treeSnapshot, index + 1, treeSnapshot.subtreeEnd(index));
+    }
+
+    private static List<String> split(String path, String separator) {
+        if (separator.isEmpty()) {
+            throw new IllegalArgumentException("separator should not be empty");
+        }
+        List<String> labelPath = new ArrayList<>();
+        int start = 0;
+        for (int end = path.indexOf(separator); end >= 0; end = path.indexOf(separator, start)) {
+            labelPath.add(path.substring(start, end));
+            start = end + separator.length();
+        }
+        labelPath.add(path.substring(start));
+        return labelPath;
+    }
+
+    private static class RangeList<DataType extends Serializable> extends AbstractList<DataType>
+            implements RandomAccess {
+        private final TreeSnapshot<DataType> treeSnapshot;
+        private final int start;
+        private final int end;
+
+        private RangeList(TreeSnapshot<DataType> treeSnapshot, int start, int end) {
+            this.treeSnapshot = treeSnapshot;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public DataType get(int index) {
+            if (index < 0 || index >= end - start) {
+                throw new IndexOutOfBoundsException(String.format("index(%s) out of [0, %s)", index, end - start));
+            }
+            return treeSnapshot.data(start + index);
+        }
+
+        @Override
+        public int size() {
+            return end - start;
+        }
+    }
+}
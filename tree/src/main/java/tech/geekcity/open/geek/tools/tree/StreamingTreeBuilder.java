@@ -0,0 +1,237 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * builds trees of {@link LinkableDataType} from an unbounded stream, in which children may come before their parents,
+ * and emits every tree once it is sealed, so the memory is proportional to the trees in flight
+ * rather than the whole history
+ * </p>
+ * <p>
+ * a data with an empty parent id starts an open tree. a data whose parent is not here yet waits in the pending buffer,
+ * along with the descendants linked to it, until the parent comes;
+ * when the pending buffer holds more than {@code maxPendingSize} nodes, the oldest waiting subtrees are evicted.
+ * an open tree is sealed either by {@link #seal(String)}, the end marker of the tree,
+ * or by {@link #advanceWatermark(long)} once nothing was added to the tree after the watermark.
+ * a sealed tree is emitted and released, and a data coming later for it waits for a parent that never comes
+ * </p>
+ * <p>
+ * not thread safe, the same as {@link TreeConstructor}
+ * </p>
+ *
+ * @author ben.wangz
+ */
+public class StreamingTreeBuilder<DataType extends LinkableDataType> {
+    private final int maxPendingSize;
+    private final Consumer<Node<DataType>> treeConsumer;
+    private final Consumer<Node<DataType>> evictionConsumer;
+    // every node held, either in an open tree or waiting in the pending buffer
+    private final Map<String, Node<DataType>> nodeIdKeyed = new HashMap<>();
+    private final Map<Node<DataType>, TreeState> openTreeOf = new LinkedHashMap<>();
+    // subtrees waiting for their parents, from the oldest to the newest
+    private final Map<Node<DataType>, TreeState> pendingTreeOf = new LinkedHashMap<>();
+    private final Map<String, List<Node<DataType>>> pendingNodeParentIdKeyed = new HashMap<>();
+    private int pendingSize;
+    private long watermark = Long.MIN_VALUE;
+
+    /**
+     * @param maxPendingSize   number of nodes the pending buffer holds at most
+     * @param treeConsumer     consumer of the trees sealed or flushed
+     * @param evictionConsumer consumer of the subtrees evicted from the pending buffer, whose roots are orphans
+     */
+    public StreamingTreeBuilder(
+            int maxPendingSize,
+            Consumer<Node<DataType>> treeConsumer,
+            Consumer<Node<DataType>> evictionConsumer) {
+        if (maxPendingSize < 0) {
+            throw new IllegalArgumentException(String.format(
+                    "maxPendingSize(%s) should not be negative", maxPendingSize));
+        }
+        this.maxPendingSize = maxPendingSize;
+        this.treeConsumer = treeConsumer;
+        this.evictionConsumer = evictionConsumer;
+    }
+
+    /**
+     * costs O(depth) to find the tree the data joins
+     *
+     * @param data      data to add
+     * @param timestamp event time of the data, compared with the watermark
+     * @throws IllegalArgumentException if the id is held already, or the data would be its own ancestor
+     */
+    public void add(DataType data, long timestamp) {
+        String id = data.id();
+        if (nodeIdKeyed.containsKey(id)) {
+            throw new IllegalArgumentException(String.format("duplicate id(%s) found", id));
+        }
+        String parentId = data.parentId();
+        Node<DataType> parent = StringUtils.isEmpty(parentId) ? null : nodeIdKeyed.get(parentId);
+        Node<DataType> parentRoot = null == parent ? null : root(parent);
+        // the children waiting for the data would become its ancestors
+        if (null != parentRoot && pendingTreeOf.containsKey(parentRoot) && id.equals(parentRoot.data().parentId())) {
+            throw new IllegalArgumentException(String.format(
+                    "cycle found: data(%s) is an ancestor of its parent(%s)", id, parentId));
+        }
+        Node<DataType> node = new Node<>(data);
+        nodeIdKeyed.put(id, node);
+        TreeState treeState = new TreeState(timestamp);
+        List<Node<DataType>> childList = pendingNodeParentIdKeyed.remove(id);
+        if (null != childList) {
+            for (Node<DataType> child : childList) {
+                TreeState childState = pendingTreeOf.remove(child);
+                pendingSize -= childState.size;
+                treeState.merge(childState);
+                node.addChild(child);
+            }
+        }
+        if (StringUtils.isEmpty(parentId)) {
+            openTreeOf.put(node, treeState);
+        } else if (null != parent) {
+            parent.addChild(node);
+            TreeState rootState = openTreeOf.get(parentRoot);
+            if (null == rootState) {
+                rootState = pendingTreeOf.get(parentRoot);
+                pendingSize += treeState.size;
+            }
+            rootState.merge(treeState);
+        } else {
+            pendingNodeParentIdKeyed.computeIfAbsent(parentId, key -> new ArrayList<>()).add(node);
+            pendingTreeOf.put(node, treeState);
+            pendingSize += treeState.size;
+        }
+        evict();
+    }
+
+    /**
+     * the end marker of a tree, which emits the tree
+     *
+     * @param rootId id of the root
+     * @return false if no open tree found with the root
+     */
+    public boolean seal(String rootId) {
+        Node<DataType> root = nodeIdKeyed.get(rootId);
+        if (null == root || null == openTreeOf.remove(root)) {
+            return false;
+        }
+        emit(root, treeConsumer);
+        return true;
+    }
+
+    /**
+     * seals every open tree to which nothing with a timestamp after the watermark was added,
+     * in the order the trees were opened
+     *
+     * @param watermark event time before which all data is taken as arrived, ignored if not after the current one
+     */
+    public void advanceWatermark(long watermark) {
+        if (watermark <= this.watermark) {
+            return;
+        }
+        this.watermark = watermark;
+        List<Node<DataType>> sealedList = new ArrayList<>();
+        for (Iterator<Map.Entry<Node<DataType>, TreeState>> iterator = openTreeOf.entrySet().iterator();
+             iterator.hasNext(); ) {
+            Map.Entry<Node<DataType>, TreeState> entry = iterator.next();
+            if (entry.getValue().lastTimestamp <= watermark) {
+                iterator.remove();
+                sealedList.add(entry.getKey());
+            }
+        }
+        sealedList.forEach(root -> emit(root, treeConsumer));
+    }
+
+    /**
+     * emits all the open trees, then all the waiting subtrees as trees like {@link TreeConstructor} does,
+     * which is usually called at the end of the stream
+     */
+    public void flush() {
+        List<Node<DataType>> rootList = new ArrayList<>(openTreeOf.keySet());
+        rootList.addAll(pendingTreeOf.keySet());
+        openTreeOf.clear();
+        pendingTreeOf.clear();
+        pendingNodeParentIdKeyed.clear();
+        pendingSize = 0;
+        rootList.forEach(root -> emit(root, treeConsumer));
+    }
+
+    /**
+     * @return number of nodes held, in open trees or in the pending buffer
+     */
+    public int size() {
+        return nodeIdKeyed.size();
+    }
+
+    /**
+     * @return number of nodes in the pending buffer
+     */
+    public int pendingSize() {
+        return pendingSize;
+    }
+
+    public int openTreeCount() {
+        return openTreeOf.size();
+    }
+
+    public long watermark() {
+        return watermark;
+    }
+
+    private void evict() {
+        for (Iterator<Map.Entry<Node<DataType>, TreeState>> iterator = pendingTreeOf.entrySet().iterator();
+             pendingSize > maxPendingSize && iterator.hasNext(); ) {
+            Map.Entry<Node<DataType>, TreeState> entry = iterator.next();
+            iterator.remove();
+            Node<DataType> orphan = entry.getKey();
+            pendingSize -= entry.getValue().size;
+            String parentId = orphan.data().parentId();
+            List<Node<DataType>> siblingList = pendingNodeParentIdKeyed.get(parentId);
+            siblingList.remove(orphan);
+            if (siblingList.isEmpty()) {
+                pendingNodeParentIdKeyed.remove(parentId);
+            }
+            emit(orphan, evictionConsumer);
+        }
+    }
+
+    private void emit(Node<DataType> root, Consumer<Node<DataType>> consumer) {
+        for (Iterator<Node<DataType>> iterator = root.preOrderIterator(); iterator.hasNext(); ) {
+            nodeIdKeyed.remove(iterator.next().data().id());
+        }
+        consumer.accept(root);
+    }
+
+    private static <DataType extends LinkableDataType> Node<DataType> root(Node<DataType> node) {
+        Node<DataType> current = node;
+        while (!current.root()) {
+            current = current.parent();
+        }
+        return current;
+    }
+
+    /**
+     * the latest timestamp and the number of nodes of an open tree or a waiting subtree
+     */
+    private static class TreeState {
+        private long lastTimestamp;
+        private int size;
+
+        private TreeState(long timestamp) {
+            this.lastTimestamp = timestamp;
+            this.size = 1;
+        }
+
+        private void merge(TreeState treeState) {
+            lastTimestamp = Math.max(lastTimestamp, treeState.lastTimestamp);
+            size += treeState.size;
+        }
+    }
+}
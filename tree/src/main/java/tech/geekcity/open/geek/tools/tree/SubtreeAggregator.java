@@ -0,0 +1,224 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.IntConsumer;
+import java.util.function.LongBinaryOperator;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * <p>
+ * bottom-up aggregation of every subtree of a {@link TreeSnapshot}, such as the cost of a department
+ * including all its sub-departments
+ * </p>
+ * <p>
+ * the aggregate of a node is its own value combined with the aggregates of its children,
+ * folded from left to right in child order, so the combiner only needs to be associative.
+ * results are stored in a primitive array indexed by the node index of the snapshot,
+ * neither boxing nor touching the payloads
+ * </p>
+ * <p>
+ * as every child is numbered after its parent, one descending pass over a subtree range computes all its aggregates.
+ * the parallel version computes the small subtrees as fork/join tasks,
+ * then folds the few large nodes above them sequentially, so the deep trees never recurse
+ * </p>
+ *
+ * @author ben.wangz
+ */
+public class SubtreeAggregator {
+    private static final int MIN_BATCH_SIZE = 1 << 12;
+
+    private SubtreeAggregator() {
+    }
+
+    public static <DataType extends Serializable> long[] aggregateLong(
+            TreeSnapshot<DataType> treeSnapshot,
+            ToLongFunction<DataType> valueFunction,
+            LongBinaryOperator combiner) {
+        long[] aggregateArray = new long[treeSnapshot.size()];
+        aggregateRange(0, treeSnapshot.size(), longAggregator(treeSnapshot, valueFunction, combiner, aggregateArray));
+        return aggregateArray;
+    }
+
+    /**
+     * @param treeSnapshot  trees to aggregate
+     * @param valueFunction value of a single node
+     * @param combiner      associative combiner
+     * @param parallelism   parallelism level of the {@link ForkJoinPool} to run in
+     * @param <DataType>    type of data
+     * @return aggregate of the subtree of every node, indexed by node index
+     */
+    public static <DataType extends Serializable> long[] aggregateLong(
+            TreeSnapshot<DataType> treeSnapshot,
+            ToLongFunction<DataType> valueFunction,
+            LongBinaryOperator combiner,
+            int parallelism) {
+        long[] aggregateArray = new long[treeSnapshot.size()];
+        parallelAggregate(
+                treeSnapshot,
+                longAggregator(treeSnapshot, valueFunction, combiner, aggregateArray),
+                parallelism);
+        return aggregateArray;
+    }
+
+    public static <DataType extends Serializable> double[] aggregateDouble(
+            TreeSnapshot<DataType> treeSnapshot,
+            ToDoubleFunction<DataType> valueFunction,
+            DoubleBinaryOperator combiner) {
+        double[] aggregateArray = new double[treeSnapshot.size()];
+        aggregateRange(0, treeSnapshot.size(), doubleAggregator(treeSnapshot, valueFunction, combiner, aggregateArray));
+        return aggregateArray;
+    }
+
+    /**
+     * @param treeSnapshot  trees to aggregate
+     * @param valueFunction value of a single node
+     * @param combiner      associative combiner
+     * @param parallelism   parallelism level of the {@link ForkJoinPool} to run in
+     * @param <DataType>    type of data
+     * @return aggregate of the subtree of every node, indexed by node index
+     */
+    public static <DataType extends Serializable> double[] aggregateDouble(
+            TreeSnapshot<DataType> treeSnapshot,
+            ToDoubleFunction<DataType> valueFunction,
+            DoubleBinaryOperator combiner,
+            int parallelism) {
+        double[] aggregateArray = new double[treeSnapshot.size()];
+        parallelAggregate(
+                treeSnapshot,
+                doubleAggregator(treeSnapshot, valueFunction, combiner, aggregateArray),
+                parallelism);
+        return aggregateArray;
+    }
+
+    private static <DataType extends Serializable> IntConsumer longAggregator(
+            TreeSnapshot<DataType> treeSnapshot,
+            ToLongFunction<DataType> valueFunction,
+            LongBinaryOperator combiner,
+            long[] aggregateArray) {
+        return index -> {
+            long aggregate = valueFunction.applyAsLong(treeSnapshot.data(index));
+            for (int child = treeSnapshot.firstChild(index);
+                 TreeSnapshot.NONE != child;
+                 child = treeSnapshot.nextSibling(child)) {
+                aggregate = combiner.applyAsLong(aggregate, aggregateArray[child]);
+            }
+            aggregateArray[index] = aggregate;
+        };
+    }
+
+    private static <DataType extends Serializable> IntConsumer doubleAggregator(
+            TreeSnapshot<DataType> treeSnapshot,
+            ToDoubleFunction<DataType> valueFunction,
+            DoubleBinaryOperator combiner,
+            double[] aggregateArray) {
+        return index -> {
+            double aggregate = valueFunction.applyAsDouble(treeSnapshot.data(index));
+            for (int child = treeSnapshot.firstChild(index);
+                 TreeSnapshot.NONE != child;
+                 child = treeSnapshot.nextSibling(child)) {
+                aggregate = combiner.applyAsDouble(aggregate, aggregateArray[child]);
+            }
+            aggregateArray[index] = aggregate;
+        };
+    }
+
+    /**
+     * the range should be made of whole subtrees, whose children are all aggregated before their parents
+     */
+    private static void aggregateRange(int start, int end, IntConsumer aggregator) {
+        for (int index = end - 1; index >= start; index--) {
+            aggregator.accept(index);
+        }
+    }
+
+    private static void parallelAggregate(
+            TreeSnapshot<?> treeSnapshot,
+            IntConsumer aggregator,
+            int parallelism) {
+        int batchSize = Math.max(MIN_BATCH_SIZE, treeSnapshot.size() / (parallelism << 3));
+        // large nodes in pre-order, and batches of small subtrees hanging from them or from no one
+        int[] largeNodeArray = new int[16];
+        int largeNodeCount = 0;
+        List<RangeBatch> batchList = new ArrayList<>();
+        RangeBatch batch = new RangeBatch(aggregator);
+        int[] stack = new int[16];
+        int stackSize = 0;
+        for (int rootIndex = treeSnapshot.rootCount() - 1; rootIndex >= 0; rootIndex--) {
+            stack = IntArrayUtils.ensureCapacity(stack, stackSize + 1);
+            stack[stackSize++] = treeSnapshot.root(rootIndex);
+        }
+        while (stackSize > 0) {
+            int index = stack[--stackSize];
+            if (treeSnapshot.subtreeSize(index) <= batchSize) {
+                batch.add(index, treeSnapshot.subtreeEnd(index));
+                if (batch.size >= batchSize) {
+                    batchList.add(batch);
+                    batch = new RangeBatch(aggregator);
+                }
+                continue;
+            }
+            largeNodeArray = IntArrayUtils.ensureCapacity(largeNodeArray, largeNodeCount + 1);
+            largeNodeArray[largeNodeCount++] = index;
+            int childCount = 0;
+            for (int child = treeSnapshot.firstChild(index);
+                 TreeSnapshot.NONE != child;
+                 child = treeSnapshot.nextSibling(child)) {
+                stack = IntArrayUtils.ensureCapacity(stack, stackSize + 1);
+                stack[stackSize++] = child;
+                childCount++;
+            }
+            // keep the pre-order by popping the first child first
+            IntArrayUtils.reverse(stack, stackSize - childCount, stackSize);
+        }
+        if (batch.size > 0) {
+            batchList.add(batch);
+        }
+        ForkJoinPool forkJoinPool = new ForkJoinPool(parallelism);
+        try {
+            forkJoinPool.submit(() -> ForkJoinTask.invokeAll(batchList)).join();
+        } finally {
+            forkJoinPool.shutdown();
+        }
+        // children of the large nodes are all aggregated now, either in batches or as large nodes after them
+        for (int index = largeNodeCount - 1; index >= 0; index--) {
+            aggregator.accept(largeNodeArray[index]);
+        }
+    }
+
+    /**
+     * small subtrees aggregated sequentially in one task
+     */
+    private static class RangeBatch extends RecursiveAction {
+        private final IntConsumer aggregator;
+        // start and end of every subtree range
+        private int[] rangeArray = new int[16];
+        private int rangeCount;
+        private int size;
+
+        private RangeBatch(IntConsumer aggregator) {
+            this.aggregator = aggregator;
+        }
+
+        private void add(int start, int end) {
+            rangeArray = IntArrayUtils.ensureCapacity(rangeArray, (rangeCount + 1) << 1);
+            rangeArray[rangeCount << 1] = start;
+            rangeArray[(rangeCount << 1) + 1] = end;
+            rangeCount++;
+            size += end - start;
+        }
+
+        @Override
+        protected void compute() {
+            for (int range = 0; range < rangeCount; range++) {
+                aggregateRange(rangeArray[range << 1], rangeArray[(range << 1) + 1], aggregator);
+            }
+        }
+    }
+}
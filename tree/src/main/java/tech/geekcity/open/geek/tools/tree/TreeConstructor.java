@@ -1,10 +1,9 @@
 package tech.geekcity.open.geek.tools.tree;
 
-import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.StringUtils;
 
 import java.io.Serializable;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -44,6 +43,54 @@ public class TreeConstructor<DataType extends Serializable> implements Serializa
          */
         boolean equals(Node<DataType> node, Node<DataType> anotherNode);
 
+        /**
+         * <p>
+         * optional hash key of the node, used to omit equal nodes by comparing only against the nodes added before
+         * with an equal key, instead of every node added before
+         * </p>
+         * <p>
+         * if overridden, this method should satisfy that
+         * the keys of two nodes are equal if {@link #equals(Node, Node)} returns true,
+         * just like {@link Object#hashCode()},
+         * and that it returns non-null for every node or for none of them
+         * </p>
+         *
+         * @param node any node
+         * @return the identity key of {@code node}, or null if not supported
+         */
+        default Object identityKey(Node<DataType> node) {
+            return null;
+        }
+
+        /**
+         * <p>
+         * optional key which the node is known by, used to link nodes by hash lookups instead of
+         * evaluating {@link #isParent(Node, Node)} against every node added before
+         * </p>
+         * <p>
+         * if overridden together with {@link #parentLinkKey(Node)}, these methods should satisfy that
+         * {@link #isParent(Node, Node)} returns true if and only if
+         * the non-null parent link key of the child equals to the link key of the parent
+         * </p>
+         *
+         * @param node any node
+         * @return the link key of {@code node}, or null if not supported
+         * @see LinkableDataType#id()
+         */
+        default Object linkKey(Node<DataType> node) {
+            return null;
+        }
+
+        /**
+         * @param node any node
+         * @return the link key of the parent of {@code node}, or null if {@code node} has no parent
+         * @see #linkKey(Node)
+         * @see LinkableDataType#parentId()
+         */
+        default Object parentLinkKey(Node<DataType> node) {
+            return null;
+        }
+
         /**
          * NOTE: do not override this method if not necessary
          *
@@ -72,23 +119,135 @@ public class TreeConstructor<DataType extends Serializable> implements Serializa
 
     private static final EnumSet<NodeComparator.RelationShip> LINKED_RELATION_SHIP
             = EnumSet.of(NodeComparator.RelationShip.PARENT, NodeComparator.RelationShip.CHILD);
+    private static final int MAX_REPORTED_LENGTH = 256;
+    // locations allocated beyond twice the nodes before compacting, which keeps small constructors from compacting
+    private static final int MIN_DEAD_LOCATIONS_TO_COMPACT = 1024;
     private final NodeComparator<DataType> nodeComparator;
-    // format id -> {location, node}
-    private final Map<String, Pair<Long, Node<DataType>>> linkableLocation4IdKeyed = new HashMap<>();
-    // format parent -> List<{location, node}>
-    private final Map<String, List<Pair<Long, Node<DataType>>>> linkableLocation4ParentKeyed = new HashMap<>();
-    // format List<{location, node}
-    private List<Pair<Long, Node<DataType>>> notLinkableDataNodeLocation = new ArrayList<>();
-    private final AtomicLong locationCounter = new AtomicLong(0L);
+    // format linkKey -> node
+    private final Map<Object, Node<DataType>> linkableNode4IdKeyed = new HashMap<>();
+    // format parentLinkKey -> List<node>
+    private final Map<Object, List<Node<DataType>>> linkableNode4ParentKeyed = new HashMap<>();
+    // format List<node>
+    private final List<Node<DataType>> notLinkableDataNodeList = new ArrayList<>();
+    // format node -> location, merged locations are resolved by locationSet,
+    // the location of a node changes only when it is relocated or the locations are compacted
+    private final Map<Node<DataType>, Integer> locationOf = new IdentityHashMap<>();
+    private final DisjointSet locationSet = new DisjointSet();
+    // format identityKey -> List<node>, the nodes with the same key are told apart by NodeComparator#equals
+    private final Map<Object, List<Node<DataType>>> identityKeyed = new HashMap<>();
+    // format node -> parentLinkKey, only for the nodes moved away from the parent they were added with
+    private final Map<Node<DataType>, Object> movedParentLinkKeyOf = new IdentityHashMap<>();
+    // format representative location -> root node of the location
+    private final Map<Integer, Node<DataType>> rootOf = new HashMap<>();
+    // unmodifiable view of the root nodes, null if any node added, removed or moved since the last treeList()
+    private transient List<Node<DataType>> treeListCache;
+    // null if the metrics are disabled
+    private final TreeConstructorMetrics metrics;
 
     public TreeConstructor(NodeComparator<DataType> nodeComparator) {
-        this.nodeComparator = nodeComparator;
+        this(nodeComparator, null);
+    }
+
+    /**
+     * @param nodeComparator node comparator
+     * @param metrics        metrics to record to, which may be shared by several constructors; null to disable
+     */
+    public TreeConstructor(NodeComparator<DataType> nodeComparator, TreeConstructorMetrics metrics) {
+        this.nodeComparator = null == metrics ? nodeComparator : metrics.counting(nodeComparator);
+        this.metrics = metrics;
+    }
+
+    /**
+     * <p>
+     * build all the trees at once in O(N),
+     * the result contains the same roots as adding every data by {@link #add(Node)} and calling {@link #treeList()}
+     * </p>
+     * <p>
+     * roots and children keep the order of {@code dataCollection};
+     * equal data is omitted, while different data with the same id is not supported
+     * </p>
+     * <p>
+     * the parent links are checked for cycles in O(N), and any cycle fails the build
+     * just like {@link #treeList()} fails, see {@link #build(Collection, TreeValidation)} to break them instead
+     * </p>
+     *
+     * @param dataCollection all the data to build
+     * @param <DataType>     type of data
+     * @return root node list
+     * @throws RuntimeException if any data is linked to itself through the parent ids
+     */
+    public static <DataType extends LinkableDataType> List<Node<DataType>> build(
+            Collection<DataType> dataCollection) {
+        return LinkableTreeBuilder.build(dataCollection, LinkableTreeBuilder.failOnCycle());
+    }
+
+    /**
+     * <p>
+     * {@link #build(Collection)} with the parent links validated in O(N),
+     * cycles and orphans are reported and handled by the policies of {@code treeValidation}
+     * instead of failing on any cycle
+     * </p>
+     *
+     * @param dataCollection all the data to build
+     * @param treeValidation policies of cycles and orphans
+     * @param <DataType>     type of data
+     * @return root node list, with the synthetic root as the last one if any
+     */
+    public static <DataType extends LinkableDataType> List<Node<DataType>> build(
+            Collection<DataType> dataCollection,
+            TreeValidation<DataType> treeValidation) {
+        return LinkableTreeBuilder.build(dataCollection, treeValidation);
+    }
+
+    /**
+     * <p>
+     * parallel version of {@link #build(Collection)} running in a {@link java.util.concurrent.ForkJoinPool}
+     * with the given parallelism level
+     * </p>
+     * <p>
+     * the id index, the parent positions and the children of different parents are built concurrently;
+     * the result is the same as {@link #build(Collection)}, no matter how the threads are scheduled
+     * </p>
+     *
+     * @param dataCollection all the data to build, whose ids should not be null
+     * @param parallelism    parallelism level
+     * @param <DataType>     type of data
+     * @return root node list
+     * @throws RuntimeException if any data is linked to itself through the parent ids
+     */
+    public static <DataType extends LinkableDataType> List<Node<DataType>> build(
+            Collection<DataType> dataCollection,
+            int parallelism) {
+        return LinkableTreeBuilder.build(dataCollection, parallelism, LinkableTreeBuilder.failOnCycle());
+    }
+
+    /**
+     * parallel version of {@link #build(Collection, TreeValidation)}, only the validation itself is sequential
+     *
+     * @param dataCollection all the data to build, whose ids should not be null
+     * @param parallelism    parallelism level
+     * @param treeValidation policies of cycles and orphans
+     * @param <DataType>     type of data
+     * @return root node list, with the synthetic root as the last one if any
+     */
+    public static <DataType extends LinkableDataType> List<Node<DataType>> build(
+            Collection<DataType> dataCollection,
+            int parallelism,
+            TreeValidation<DataType> treeValidation) {
+        return LinkableTreeBuilder.build(dataCollection, parallelism, treeValidation);
     }
 
     public void clear() {
-        linkableLocation4IdKeyed.clear();
-        linkableLocation4ParentKeyed.clear();
-        notLinkableDataNodeLocation.clear();
+        linkableNode4IdKeyed.clear();
+        linkableNode4ParentKeyed.clear();
+        notLinkableDataNodeList.clear();
+        locationOf.clear();
+        locationSet.clear();
+        identityKeyed.clear();
+        movedParentLinkKeyOf.clear();
+        rootOf.clear();
+        treeListCache = null;
+        recordIndexSizes();
     }
 
     public void add(Node<DataType> nodeToAdd) {
@@ -97,184 +256,438 @@ public class TreeConstructor<DataType extends Serializable> implements Serializa
 
     /**
      * <p>
-     * if linkableDataTypeOptimize and {@code nodeToAdd} instanceof {@link LinkableDataType},
+     * if linkableDataTypeOptimize and {@code nodeToAdd} instanceof {@link LinkableDataType}
+     * or the {@link NodeComparator} provides a {@link NodeComparator#linkKey(Node)} of it,
      * the constructor will use the optimized method to add node
      * </p>
      *
      * @param nodeToAdd                node to add
      * @param linkableDataTypeOptimize turn on optimization or not
      * @see LinkableDataType
+     * @see NodeComparator#linkKey(Node)
      */
     public void add(Node<DataType> nodeToAdd, boolean linkableDataTypeOptimize) {
+        if (null == metrics) {
+            addAndLink(nodeToAdd, linkableDataTypeOptimize);
+            compactLocationsIfNeeded();
+            return;
+        }
+        long start = System.nanoTime();
+        addAndLink(nodeToAdd, linkableDataTypeOptimize);
+        compactLocationsIfNeeded();
+        metrics.recordAddLatency(System.nanoTime() - start);
+        recordIndexSizes();
+    }
+
+    /**
+     * <p>
+     * remove the node with the {@code linkKey}, which should be added by the optimized method of {@link #add(Node)}
+     * </p>
+     * <p>
+     * the node is detached from its parent, and each of its children becomes the root of a new tree;
+     * the children stay indexed by their parent link key, so they will be linked again if such a node is added
+     * </p>
+     * <p>
+     * it costs O(number of nodes in the detached subtrees moved to new locations) at most,
+     * which are all the subtrees of the children for a node with a parent,
+     * and all but the one of the first child for a root, whose subtree keeps the location of the root,
+     * plus the amortized O(1) of reclaiming the locations no node refers to any more
+     * </p>
+     *
+     * @param linkKey link key of the node to remove, e.g. {@link LinkableDataType#id()}
+     * @return false if no node found with the {@code linkKey}
+     */
+    public boolean remove(Object linkKey) {
+        Node<DataType> nodeToRemove = linkableNode4IdKeyed.remove(linkKey);
+        if (null == nodeToRemove) {
+            return false;
+        }
+        unregisterParentLinkKey(nodeToRemove);
+        movedParentLinkKeyOf.remove(nodeToRemove);
+        Object identityKey = nodeComparator.identityKey(nodeToRemove);
+        if (null != identityKey) {
+            List<Node<DataType>> sameKeyNodeList = identityKeyed.get(identityKey);
+            if (null != sameKeyNodeList) {
+                sameKeyNodeList.remove(nodeToRemove);
+                if (sameKeyNodeList.isEmpty()) {
+                    identityKeyed.remove(identityKey);
+                }
+            }
+        }
+        treeListCache = null;
+        boolean root = nodeToRemove.root();
+        int location = locationOf.remove(nodeToRemove);
+        if (root) {
+            rootOf.remove(locationSet.find(location));
+        } else {
+            nodeToRemove.parent().removeChild(nodeToRemove);
+        }
+        for (int index = 0; nodeToRemove.childCount() > 0; index++) {
+            Node<DataType> child = nodeToRemove.child(0);
+            nodeToRemove.removeChild(child);
+            if (root && 0 == index) {
+                // a removed root leaves no other node in its location, so the first subtree keeps it as it is
+                rootOf.put(locationSet.find(location), child);
+            } else {
+                relocateAsRoot(child, locationSet.makeSet());
+            }
+        }
+        compactLocationsIfNeeded();
+        recordIndexSizes();
+        return true;
+    }
+
+    /**
+     * <p>
+     * move the node with the {@code linkKey} and its subtree under the node with the {@code newParentLinkKey},
+     * the node should be added by the optimized method of {@link #add(Node)}
+     * </p>
+     * <p>
+     * the data of the node is not modified,
+     * the {@code newParentLinkKey} overrides {@link NodeComparator#parentLinkKey(Node)} of it from now on;
+     * if no node found with {@code newParentLinkKey},
+     * the moved node becomes a root and waits for such a node to be added
+     * </p>
+     * <p>
+     * it costs O(1) for moving a root, otherwise O(number of nodes under the moved node)
+     * </p>
+     *
+     * @param linkKey          link key of the node to move
+     * @param newParentLinkKey link key of the new parent node, null to make the node a root
+     * @return false if no node found with the {@code linkKey}
+     * @throws IllegalArgumentException if the new parent node is in the subtree of the moved node
+     */
+    public boolean move(Object linkKey, Object newParentLinkKey) {
+        boolean moved = moveSubtree(linkKey, newParentLinkKey);
+        compactLocationsIfNeeded();
+        recordIndexSizes();
+        return moved;
+    }
+
+    /**
+     * <p>
+     * the roots are maintained while adding, removing and moving nodes,
+     * so this method costs O(number of roots),
+     * and returns the same unmodifiable view if nothing changed since the last call
+     * </p>
+     *
+     * @return unmodifiable root node list
+     */
+    public List<Node<DataType>> treeList() {
+        if (null == metrics) {
+            return rootList();
+        }
+        long start = System.nanoTime();
+        List<Node<DataType>> rootList = rootList();
+        metrics.recordTreeListLatency(System.nanoTime() - start);
+        return rootList;
+    }
+
+    private void addAndLink(Node<DataType> nodeToAdd, boolean linkableDataTypeOptimize) {
         // omit any equal node
-        if (Stream
-                .concat(
-                        linkableLocation4IdKeyed
-                                .entrySet()
-                                .stream()
-                                .map(entry -> entry.getValue().getRight()),
-                        notLinkableDataNodeLocation
-                                .stream()
-                                .map(Pair::getRight))
+        Object identityKey = nodeComparator.identityKey(nodeToAdd);
+        if (null != identityKey) {
+            List<Node<DataType>> sameKeyNodeList
+                    = identityKeyed.computeIfAbsent(identityKey, key -> new ArrayList<>(1));
+            if (sameKeyNodeList.stream().anyMatch(node -> nodeComparator.equals(node, nodeToAdd))) {
+                recordOmittedAdd();
+                return;
+            }
+            sameKeyNodeList.add(nodeToAdd);
+        } else if (addedNodeStream()
                 .anyMatch(node -> nodeComparator.equals(node, nodeToAdd))) {
+            recordOmittedAdd();
             return;
         }
-        boolean canOptimize = linkableDataTypeOptimize && (nodeToAdd.data() instanceof LinkableDataType);
-        List<Long> matchedLocationList = canOptimize ? optimizedSearchAndLink(nodeToAdd) : searchAndLink(nodeToAdd);
+        boolean canOptimize = linkableDataTypeOptimize && null != linkKey(nodeToAdd);
+        if (null != metrics) {
+            metrics.recordAdd(canOptimize);
+        }
+        List<Integer> matchedLocationList = canOptimize ? optimizedSearchAndLink(nodeToAdd) : searchAndLink(nodeToAdd);
         modifyContainers(canOptimize, nodeToAdd, matchedLocationList);
     }
 
-    public List<Node<DataType>> treeList() {
-        Map<Long, List<Node<DataType>>> groupList = Stream.concat(
-                linkableLocation4IdKeyed.entrySet().stream().map(Map.Entry::getValue),
-                notLinkableDataNodeLocation.stream())
-                .collect(Collectors.toMap(
-                        Pair::getLeft,
-                        nodePair -> new ArrayList<>(Collections.singletonList(nodePair.getRight())),
-                        (oldValue, newValue) -> {
-                            oldValue.addAll(newValue);
-                            return oldValue;
-                        }));
-        return groupList.entrySet()
-                .stream()
-                .map(Map.Entry::getValue)
-                .map(group -> {
-                    List<Node<DataType>> rootNodeList = group.stream()
-                            .filter(Node::root)
-                            .collect(Collectors.toList());
-                    if (rootNodeList.isEmpty()) {
-                        throw new RuntimeException(
-                                String.format("no rootNode found in the group(%s)", group));
-                    }
-                    // won't happen according to the merge rule in add method
-                    if (rootNodeList.size() > 1) {
-                        throw new RuntimeException(
-                                String.format("more than one root node found in group(%s)", group));
-                    }
-                    return rootNodeList.get(0);
-                }).collect(Collectors.toList());
-    }
-
-    private List<Long> searchAndLink(Node<DataType> nodeToAdd) {
-        List<Pair<Long, Node<DataType>>> matchedNodePairList = Stream.concat(Stream.concat(
-                linkableLocation4IdKeyed.entrySet().stream().map(Map.Entry::getValue),
-                linkableLocation4ParentKeyed.entrySet().stream().flatMap(entry -> entry.getValue().stream())),
-                notLinkableDataNodeLocation.stream())
-                .filter(nodePair -> LINKED_RELATION_SHIP.contains(
-                        nodeComparator.relationShip(nodeToAdd, nodePair.getRight())))
-                .collect(Collectors.toList());
-        matchedNodePairList.stream()
-                .map(Pair::getRight)
-                .forEach(relationalNode -> {
-                    switch (nodeComparator.relationShip(nodeToAdd, relationalNode)) {
-                        case PARENT:
-                            nodeToAdd.addChild(relationalNode);
-                            break;
-                        case CHILD:
-                            relationalNode.addChild(nodeToAdd);
-                            break;
-                    }
-                });
-        return matchedNodePairList.stream()
-                .map(Pair::getLeft)
-                .distinct()
+    private boolean moveSubtree(Object linkKey, Object newParentLinkKey) {
+        Node<DataType> nodeToMove = linkableNode4IdKeyed.get(linkKey);
+        if (null == nodeToMove) {
+            return false;
+        }
+        Node<DataType> newParentNode = null == newParentLinkKey ? null : linkableNode4IdKeyed.get(newParentLinkKey);
+        for (Node<DataType> ancestor = newParentNode; null != ancestor; ancestor = ancestor.parent()) {
+            if (ancestor == nodeToMove) {
+                throw new IllegalArgumentException(
+                        String.format("cannot move node(%s) under its descendant(%s)", linkKey, newParentLinkKey));
+            }
+        }
+        treeListCache = null;
+        unregisterParentLinkKey(nodeToMove);
+        if (Objects.equals(newParentLinkKey, parentLinkKey(nodeToMove))) {
+            movedParentLinkKeyOf.remove(nodeToMove);
+        } else {
+            movedParentLinkKeyOf.put(nodeToMove, newParentLinkKey);
+        }
+        registerParentLinkKey(nodeToMove);
+        if (null != newParentNode && nodeToMove.parent() == newParentNode) {
+            return true;
+        }
+        if (nodeToMove.root()) {
+            // the location of a root contains exactly its subtree
+            if (null != newParentNode) {
+                newParentNode.addChild(nodeToMove);
+                int parentLocation = locationSet.find(locationOf.get(newParentNode));
+                Node<DataType> parentRoot = rootOf.remove(parentLocation);
+                rootOf.remove(locationSet.find(locationOf.get(nodeToMove)));
+                rootOf.put(locationSet.union(parentLocation, locationOf.get(nodeToMove)), parentRoot);
+                if (null != metrics) {
+                    metrics.recordMerge(1);
+                }
+            }
+            return true;
+        }
+        nodeToMove.parent().removeChild(nodeToMove);
+        if (null == newParentNode) {
+            relocateAsRoot(nodeToMove, locationSet.makeSet());
+        } else {
+            newParentNode.addChild(nodeToMove);
+            relocate(nodeToMove, locationSet.find(locationOf.get(newParentNode)));
+        }
+        return true;
+    }
+
+    private List<Node<DataType>> rootList() {
+        if (null == treeListCache) {
+            rootOf.forEach((location, rootNode) -> {
+                // the root found while merging has got a parent, which means a cycle
+                if (!rootNode.root()) {
+                    Object linkKey = linkKey(rootNode);
+                    throw new RuntimeException(
+                            String.format("no rootNode found in the group(%s) which contains node(%s), "
+                                            + "see TreeValidation to find all the cycles",
+                                    location,
+                                    StringUtils.abbreviate(
+                                            String.valueOf(null == linkKey ? rootNode.data() : linkKey),
+                                            MAX_REPORTED_LENGTH)));
+                }
+            });
+            treeListCache = Collections.unmodifiableList(new ArrayList<>(rootOf.values()));
+        }
+        return treeListCache;
+    }
+
+    private List<Integer> searchAndLink(Node<DataType> nodeToAdd) {
+        List<Node<DataType>> matchedNodeList = addedNodeStream()
+                .filter(node -> LINKED_RELATION_SHIP.contains(
+                        nodeComparator.relationShip(nodeToAdd, node)))
                 .collect(Collectors.toList());
+        link(nodeToAdd, matchedNodeList);
+        return locations(matchedNodeList.stream());
     }
 
-    private List<Long> optimizedSearchAndLink(Node<DataType> nodeToAdd) {
-        Pair<Long, Node<DataType>> parentNodePair
-                = linkableLocation4IdKeyed.get(((LinkableDataType) nodeToAdd.data()).parentId());
-        List<Pair<Long, Node<DataType>>> childNodePairList
-                = linkableLocation4ParentKeyed.get(((LinkableDataType) nodeToAdd.data()).id());
-        List<Pair<Long, Node<DataType>>> relationalNodePairList = notLinkableDataNodeLocation
+    private List<Integer> optimizedSearchAndLink(Node<DataType> nodeToAdd) {
+        Object parentLinkKey = parentLinkKey(nodeToAdd);
+        Node<DataType> parentNode = null == parentLinkKey ? null : linkableNode4IdKeyed.get(parentLinkKey);
+        List<Node<DataType>> childNodeList = linkableNode4ParentKeyed.get(linkKey(nodeToAdd));
+        List<Node<DataType>> relationalNodeList = notLinkableDataNodeList
                 .stream()
-                .filter(nodePair
+                .filter(node
                         -> LINKED_RELATION_SHIP.contains(
-                        nodeComparator.relationShip(nodeToAdd, nodePair.getRight())))
+                        nodeComparator.relationShip(nodeToAdd, node)))
                 .collect(Collectors.toList());
-        if (null != parentNodePair) {
-            parentNodePair.getRight().addChild(nodeToAdd);
-        }
-        if (null != childNodePairList) {
-            childNodePairList.forEach(childNodePair -> nodeToAdd.addChild(childNodePair.getRight()));
-        }
-        relationalNodePairList.stream()
-                .map(Pair::getRight)
-                .forEach(relationalNode -> {
-                    switch (nodeComparator.relationShip(nodeToAdd, relationalNode)) {
-                        case PARENT:
-                            nodeToAdd.addChild(relationalNode);
-                            break;
-                        case CHILD:
-                            relationalNode.addChild(nodeToAdd);
-                            break;
-                    }
-                });
-        return Stream
+        if (null != parentNode) {
+            parentNode.addChild(nodeToAdd);
+        }
+        if (null != childNodeList) {
+            childNodeList.forEach(nodeToAdd::addChild);
+        }
+        link(nodeToAdd, relationalNodeList);
+        return locations(Stream
                 .concat(
                         Stream.concat(
-                                null == parentNodePair
-                                        ? Stream.empty() : Stream.of(parentNodePair.getLeft()),
-                                null == childNodePairList
-                                        ? Stream.empty() : childNodePairList.stream().map(Pair::getLeft)),
-                        relationalNodePairList.stream().map(Pair::getLeft))
+                                null == parentNode
+                                        ? Stream.empty() : Stream.of(parentNode),
+                                null == childNodeList
+                                        ? Stream.empty() : childNodeList.stream()),
+                        relationalNodeList.stream()));
+    }
+
+    private Stream<Node<DataType>> addedNodeStream() {
+        return Stream.concat(
+                linkableNode4IdKeyed.values().stream(),
+                notLinkableDataNodeList.stream());
+    }
+
+    private void link(Node<DataType> nodeToAdd, List<Node<DataType>> relationalNodeList) {
+        relationalNodeList.forEach(relationalNode -> {
+            switch (nodeComparator.relationShip(nodeToAdd, relationalNode)) {
+                case PARENT:
+                    nodeToAdd.addChild(relationalNode);
+                    break;
+                case CHILD:
+                    relationalNode.addChild(nodeToAdd);
+                    break;
+            }
+        });
+    }
+
+    private List<Integer> locations(Stream<Node<DataType>> nodeStream) {
+        return nodeStream
+                .map(node -> locationSet.find(locationOf.get(node)))
                 .distinct()
                 .collect(Collectors.toList());
     }
 
-    private void modifyContainers(boolean canOptimize, Node<DataType> nodeToAdd, List<Long> matchedLocationList) {
+    private void modifyContainers(boolean canOptimize, Node<DataType> nodeToAdd, List<Integer> matchedLocationList) {
+        treeListCache = null;
         if (matchedLocationList.isEmpty()) {
             // add with a new location
-            add(canOptimize, nodeToAdd, locationCounter.getAndIncrement());
-            return;
-        }
-        if (1 == matchedLocationList.size()) {
-            // add to an existing location
-            add(canOptimize, nodeToAdd, matchedLocationList.get(0));
+            int location = locationSet.makeSet();
+            rootOf.put(location, nodeToAdd);
+            add(canOptimize, nodeToAdd, location);
             return;
         }
+        // the root of the parent location stays the root, otherwise the node to add becomes the root
+        Node<DataType> rootNode = nodeToAdd.root()
+                ? nodeToAdd
+                : rootOf.get(locationSet.find(locationOf.get(nodeToAdd.parent())));
         // add to an existing location(first) and merge other locations to it
-        long firstMatchLocation = matchedLocationList.get(0);
-        linkableLocation4IdKeyed.entrySet()
-                .forEach(nodePairEntry -> {
-                    Pair<Long, Node<DataType>> nodePair = nodePairEntry.getValue();
-                    if (matchedLocationList.contains(nodePair.getLeft())) {
-                        nodePairEntry.setValue(Pair.of(firstMatchLocation, nodePair.getRight()));
-                    }
-                });
-        linkableLocation4ParentKeyed.entrySet()
-                .forEach(entry
-                        -> entry.setValue(
-                        entry.getValue()
-                                .stream()
-                                .map(childNodePair
-                                        -> matchedLocationList.contains(childNodePair.getLeft())
-                                        ? Pair.of(firstMatchLocation, childNodePair.getRight())
-                                        : childNodePair)
-                                .collect(Collectors.toList())));
-        notLinkableDataNodeLocation = notLinkableDataNodeLocation.stream()
-                .map(nodePair
-                        -> matchedLocationList.contains(nodePair.getLeft())
-                        ? Pair.of(firstMatchLocation, nodePair.getRight())
-                        : nodePair)
-                .collect(Collectors.toList());
-        add(canOptimize, nodeToAdd, firstMatchLocation);
+        int mergedLocation = matchedLocationList.get(0);
+        rootOf.remove(mergedLocation);
+        for (int index = 1; index < matchedLocationList.size(); index++) {
+            rootOf.remove(matchedLocationList.get(index));
+            mergedLocation = locationSet.union(mergedLocation, matchedLocationList.get(index));
+        }
+        if (null != metrics) {
+            metrics.recordMerge(matchedLocationList.size() - 1);
+        }
+        rootOf.put(mergedLocation, rootNode);
+        add(canOptimize, nodeToAdd, mergedLocation);
     }
 
-    private void add(boolean canOptimize, Node<DataType> nodeToAdd, long locationToAdd) {
+    private void add(boolean canOptimize, Node<DataType> nodeToAdd, int locationToAdd) {
+        locationOf.put(nodeToAdd, locationToAdd);
         if (canOptimize) {
-            linkableLocation4IdKeyed.put(
-                    ((LinkableDataType) nodeToAdd.data()).id(),
-                    Pair.of(locationToAdd, nodeToAdd));
-            linkableLocation4ParentKeyed.merge(
-                    ((LinkableDataType) nodeToAdd.data()).parentId(),
-                    new ArrayList<>(Collections.singletonList(Pair.of(locationToAdd, nodeToAdd))),
-                    (oldValue, newValue) -> {
-                        oldValue.addAll(newValue);
-                        return oldValue;
-                    });
+            linkableNode4IdKeyed.put(linkKey(nodeToAdd), nodeToAdd);
+            registerParentLinkKey(nodeToAdd);
         } else {
-            notLinkableDataNodeLocation.add(Pair.of(locationToAdd, nodeToAdd));
+            notLinkableDataNodeList.add(nodeToAdd);
+        }
+    }
+
+    private void registerParentLinkKey(Node<DataType> node) {
+        Object parentLinkKey = registeredParentLinkKey(node);
+        if (null != parentLinkKey) {
+            List<Node<DataType>> nodeList
+                    = linkableNode4ParentKeyed.computeIfAbsent(parentLinkKey, key -> new ArrayList<>());
+            nodeList.add(node);
+            if (null != metrics) {
+                metrics.recordParentListSize(nodeList.size());
+            }
+        }
+    }
+
+    private void unregisterParentLinkKey(Node<DataType> node) {
+        Object parentLinkKey = registeredParentLinkKey(node);
+        List<Node<DataType>> nodeList = null == parentLinkKey ? null : linkableNode4ParentKeyed.get(parentLinkKey);
+        if (null != nodeList) {
+            nodeList.remove(node);
+            if (nodeList.isEmpty()) {
+                linkableNode4ParentKeyed.remove(parentLinkKey);
+            }
+        }
+    }
+
+    private Object registeredParentLinkKey(Node<DataType> node) {
+        return movedParentLinkKeyOf.containsKey(node) ? movedParentLinkKeyOf.get(node) : parentLinkKey(node);
+    }
+
+    private void relocateAsRoot(Node<DataType> subtreeRoot, int location) {
+        relocate(subtreeRoot, location);
+        rootOf.put(locationSet.find(location), subtreeRoot);
+    }
+
+    private void relocate(Node<DataType> subtreeRoot, int location) {
+        Deque<Node<DataType>> stack = new ArrayDeque<>();
+        stack.push(subtreeRoot);
+        while (!stack.isEmpty()) {
+            Node<DataType> node = stack.pop();
+            locationOf.put(node, location);
+            if (null != metrics) {
+                metrics.recordRelocatedNode();
+            }
+            for (int index = 0; index < node.childCount(); index++) {
+                stack.push(node.child(index));
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * every location made while removing and moving outlives the nodes it is made for,
+     * so the locations are rebuilt as one per tree once they outnumber the nodes twice,
+     * which keeps the memory proportional to the nodes held rather than the edits made
+     * </p>
+     * <p>
+     * it costs O(N), after at least N locations made since the last compaction, so O(1) amortized
+     * </p>
+     */
+    private void compactLocationsIfNeeded() {
+        if (locationSet.size() <= (locationOf.size() << 1) + MIN_DEAD_LOCATIONS_TO_COMPACT) {
+            return;
+        }
+        for (Map.Entry<Node<DataType>, Integer> entry : locationOf.entrySet()) {
+            entry.setValue(locationSet.find(entry.getValue()));
+        }
+        locationSet.clear();
+        Map<Integer, Integer> compactedLocationOf = new HashMap<>();
+        Map<Integer, Node<DataType>> compactedRootOf = new HashMap<>();
+        rootOf.forEach((location, rootNode) -> {
+            int compactedLocation = locationSet.makeSet();
+            compactedLocationOf.put(location, compactedLocation);
+            compactedRootOf.put(compactedLocation, rootNode);
+        });
+        rootOf.clear();
+        rootOf.putAll(compactedRootOf);
+        for (Map.Entry<Node<DataType>, Integer> entry : locationOf.entrySet()) {
+            entry.setValue(compactedLocationOf.get(entry.getValue()));
+        }
+    }
+
+    /**
+     * @return number of locations allocated, including the ones no node refers to
+     */
+    int locationCount() {
+        return locationSet.size();
+    }
+
+    private void recordOmittedAdd() {
+        if (null != metrics) {
+            metrics.recordOmittedAdd();
+        }
+    }
+
+    private void recordIndexSizes() {
+        if (null != metrics) {
+            metrics.recordIndexSizes(
+                    linkableNode4IdKeyed.size(),
+                    linkableNode4ParentKeyed.size(),
+                    notLinkableDataNodeList.size(),
+                    rootOf.size());
+        }
+    }
+
+    private Object linkKey(Node<DataType> node) {
+        Object linkKey = nodeComparator.linkKey(node);
+        if (null == linkKey && node.data() instanceof LinkableDataType) {
+            return ((LinkableDataType) node.data()).id();
+        }
+        return linkKey;
+    }
+
+    private Object parentLinkKey(Node<DataType> node) {
+        Object parentLinkKey = nodeComparator.parentLinkKey(node);
+        if (null == parentLinkKey && node.data() instanceof LinkableDataType) {
+            return ((LinkableDataType) node.data()).parentId();
         }
+        return parentLinkKey;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,373 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * opt-in counters of the internals of a {@link TreeConstructor},
+ * enabled by {@link TreeConstructor#TreeConstructor(TreeConstructor.NodeComparator, TreeConstructorMetrics)}
+ * </p>
+ * <p>
+ * counters are {@link LongAdder}s and the latencies go to log2 histograms,
+ * so they cost a few nanoseconds per call and can be read by {@link #snapshot()} from any thread at any time;
+ * a {@link TreeConstructor} without metrics checks a null field and nothing else
+ * </p>
+ *
+ * @author ben.wangz
+ */
+public class TreeConstructorMetrics implements Serializable {
+    private final LongAdder isParentCount = new LongAdder();
+    private final LongAdder equalsCount = new LongAdder();
+    private final LongAdder relationShipCount = new LongAdder();
+    private final LongAdder optimizedAddCount = new LongAdder();
+    private final LongAdder fallbackAddCount = new LongAdder();
+    private final LongAdder omittedAddCount = new LongAdder();
+    private final LongAdder mergeCount = new LongAdder();
+    private final LongAdder relocatedNodeCount = new LongAdder();
+    // not a LongAccumulator, whose function is a lambda that cannot be serialized along with the constructor
+    private final AtomicLong maxParentListSize = new AtomicLong();
+    private final LatencyHistogram addLatency = new LatencyHistogram();
+    private final LatencyHistogram treeListLatency = new LatencyHistogram();
+    // index sizes are written by the constructor only, and read by any thread
+    private volatile int linkKeyIndexSize;
+    private volatile int parentLinkKeyIndexSize;
+    private volatile int notLinkableNodeCount;
+    private volatile int rootCount;
+
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * @return a comparator counting the calls to {@code nodeComparator}
+     */
+    <DataType extends Serializable> TreeConstructor.NodeComparator<DataType> counting(
+            TreeConstructor.NodeComparator<DataType> nodeComparator) {
+        return new CountingNodeComparator<>(nodeComparator, this);
+    }
+
+    void recordAdd(boolean optimized) {
+        (optimized ? optimizedAddCount : fallbackAddCount).increment();
+    }
+
+    void recordOmittedAdd() {
+        omittedAddCount.increment();
+    }
+
+    void recordMerge(int count) {
+        mergeCount.add(count);
+    }
+
+    void recordRelocatedNode() {
+        relocatedNodeCount.increment();
+    }
+
+    void recordParentListSize(int size) {
+        long max = maxParentListSize.get();
+        while (size > max && !maxParentListSize.compareAndSet(max, size)) {
+            max = maxParentListSize.get();
+        }
+    }
+
+    void recordAddLatency(long nanos) {
+        addLatency.record(nanos);
+    }
+
+    void recordTreeListLatency(long nanos) {
+        treeListLatency.record(nanos);
+    }
+
+    void recordIndexSizes(int linkKeyIndexSize, int parentLinkKeyIndexSize, int notLinkableNodeCount, int rootCount) {
+        this.linkKeyIndexSize = linkKeyIndexSize;
+        this.parentLinkKeyIndexSize = parentLinkKeyIndexSize;
+        this.notLinkableNodeCount = notLinkableNodeCount;
+        this.rootCount = rootCount;
+    }
+
+    /**
+     * histogram of nanoseconds, whose bucket {@code i} counts the values in [2^(i-1), 2^i), and bucket 0 counts 0
+     */
+    static class LatencyHistogram implements Serializable {
+        private static final int BUCKET_COUNT = Long.SIZE;
+        private final AtomicLongArray bucketArray = new AtomicLongArray(BUCKET_COUNT);
+        private final LongAdder totalNanos = new LongAdder();
+
+        void record(long nanos) {
+            long value = Math.max(0, nanos);
+            bucketArray.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(value));
+            totalNanos.add(value);
+        }
+    }
+
+    /**
+     * values of the metrics at the moment it is taken
+     */
+    public static class Snapshot implements Serializable {
+        private final long isParentCount;
+        private final long equalsCount;
+        private final long relationShipCount;
+        private final long optimizedAddCount;
+        private final long fallbackAddCount;
+        private final long omittedAddCount;
+        private final long mergeCount;
+        private final long relocatedNodeCount;
+        private final long maxParentListSize;
+        private final int linkKeyIndexSize;
+        private final int parentLinkKeyIndexSize;
+        private final int notLinkableNodeCount;
+        private final int rootCount;
+        private final LatencySnapshot addLatency;
+        private final LatencySnapshot treeListLatency;
+
+        private Snapshot(TreeConstructorMetrics metrics) {
+            this.isParentCount = metrics.isParentCount.sum();
+            this.equalsCount = metrics.equalsCount.sum();
+            this.relationShipCount = metrics.relationShipCount.sum();
+            this.optimizedAddCount = metrics.optimizedAddCount.sum();
+            this.fallbackAddCount = metrics.fallbackAddCount.sum();
+            this.omittedAddCount = metrics.omittedAddCount.sum();
+            this.mergeCount = metrics.mergeCount.sum();
+            this.relocatedNodeCount = metrics.relocatedNodeCount.sum();
+            this.maxParentListSize = metrics.maxParentListSize.get();
+            this.linkKeyIndexSize = metrics.linkKeyIndexSize;
+            this.parentLinkKeyIndexSize = metrics.parentLinkKeyIndexSize;
+            this.notLinkableNodeCount = metrics.notLinkableNodeCount;
+            this.rootCount = metrics.rootCount;
+            this.addLatency = new LatencySnapshot(metrics.addLatency);
+            this.treeListLatency = new LatencySnapshot(metrics.treeListLatency);
+        }
+
+        /**
+         * @return calls to {@link TreeConstructor.NodeComparator#isParent(Node, Node)}
+         */
+        public long isParentCount() {
+            return isParentCount;
+        }
+
+        /**
+         * @return calls to {@link TreeConstructor.NodeComparator#equals(Node, Node)}
+         */
+        public long equalsCount() {
+            return equalsCount;
+        }
+
+        /**
+         * @return calls to {@link TreeConstructor.NodeComparator#relationShip(Node, Node)},
+         * whose calls to {@link TreeConstructor.NodeComparator#isParent(Node, Node)} are counted by
+         * {@link #isParentCount()} unless it is overridden
+         */
+        public long relationShipCount() {
+            return relationShipCount;
+        }
+
+        /**
+         * @return nodes added with the link key indexes
+         */
+        public long optimizedAddCount() {
+            return optimizedAddCount;
+        }
+
+        /**
+         * @return nodes added by comparing with the nodes added before
+         */
+        public long fallbackAddCount() {
+            return fallbackAddCount;
+        }
+
+        /**
+         * @return nodes omitted since an equal node was added before
+         */
+        public long omittedAddCount() {
+            return omittedAddCount;
+        }
+
+        /**
+         * @return locations merged into others while adding
+         */
+        public long mergeCount() {
+            return mergeCount;
+        }
+
+        /**
+         * @return nodes moved to other locations while removing and moving
+         */
+        public long relocatedNodeCount() {
+            return relocatedNodeCount;
+        }
+
+        /**
+         * @return the largest number of nodes waiting for the same parent link key
+         */
+        public long maxParentListSize() {
+            return maxParentListSize;
+        }
+
+        public int linkKeyIndexSize() {
+            return linkKeyIndexSize;
+        }
+
+        public int parentLinkKeyIndexSize() {
+            return parentLinkKeyIndexSize;
+        }
+
+        public int notLinkableNodeCount() {
+            return notLinkableNodeCount;
+        }
+
+        public int rootCount() {
+            return rootCount;
+        }
+
+        public LatencySnapshot addLatency() {
+            return addLatency;
+        }
+
+        public LatencySnapshot treeListLatency() {
+            return treeListLatency;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("comparator(isParent: %s, equals: %s, relationShip: %s), "
+                            + "add(optimized: %s, fallback: %s, omitted: %s, latency: %s), "
+                            + "merges: %s, relocated nodes: %s, "
+                            + "index(link keys: %s, parent link keys: %s, max parent list: %s, not linkable: %s), "
+                            + "roots: %s, treeList(latency: %s)",
+                    isParentCount, equalsCount, relationShipCount,
+                    optimizedAddCount, fallbackAddCount, omittedAddCount, addLatency,
+                    mergeCount, relocatedNodeCount,
+                    linkKeyIndexSize, parentLinkKeyIndexSize, maxParentListSize, notLinkableNodeCount,
+                    rootCount, treeListLatency);
+        }
+    }
+
+    public static class LatencySnapshot implements Serializable {
+        private final long[] bucketCountArray;
+        private final long count;
+        private final long totalNanos;
+
+        private LatencySnapshot(LatencyHistogram latencyHistogram) {
+            bucketCountArray = new long[LatencyHistogram.BUCKET_COUNT];
+            long count = 0;
+            for (int bucket = 0; bucket < bucketCountArray.length; bucket++) {
+                bucketCountArray[bucket] = latencyHistogram.bucketArray.get(bucket);
+                count += bucketCountArray[bucket];
+            }
+            this.count = count;
+            this.totalNanos = latencyHistogram.totalNanos.sum();
+        }
+
+        public long count() {
+            return count;
+        }
+
+        public long totalNanos() {
+            return totalNanos;
+        }
+
+        /**
+         * @param bucket index in [0, 64)
+         * @return number of values in [2^(bucket-1), 2^bucket) nanoseconds, or of 0 for bucket 0
+         */
+        public long bucketCount(int bucket) {
+            return bucketCountArray[bucket];
+        }
+
+        /**
+         * @param quantile quantile in [0, 1], such as 0.99
+         * @return the exclusive upper bound in nanoseconds of the bucket containing the quantile,
+         * which is within 2 times of the exact value
+         */
+        public long quantileUpperBound(double quantile) {
+            if (quantile < 0 || quantile > 1) {
+                throw new IllegalArgumentException(String.format("quantile(%s) should be in [0, 1]", quantile));
+            }
+            long rank = (long) Math.ceil(quantile * count);
+            long accumulated = 0;
+            for (int bucket = 0; bucket < bucketCountArray.length; bucket++) {
+                accumulated += bucketCountArray[bucket];
+                if (accumulated >= rank && accumulated > 0) {
+                    return bucket < Long.SIZE - 1 ? 1L << bucket : Long.MAX_VALUE;
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count: %s, mean: %s ns, p50 < %s ns, p99 < %s ns",
+                    count,
+                    0 == count ? 0 : totalNanos / count,
+                    quantileUpperBound(0.5),
+                    quantileUpperBound(0.99));
+        }
+    }
+
+    /**
+     * counts the calls to the comparator it wraps;
+     * a default {@link TreeConstructor.NodeComparator#relationShip(Node, Node)} is computed by the wrapper itself,
+     * so the calls to {@link TreeConstructor.NodeComparator#isParent(Node, Node)} made by it are counted as well
+     */
+    private static class CountingNodeComparator<DataType extends Serializable>
+            implements TreeConstructor.NodeComparator<DataType>, Serializable {
+        private final TreeConstructor.NodeComparator<DataType> nodeComparator;
+        private final TreeConstructorMetrics metrics;
+        private final boolean relationShipOverridden;
+
+        private CountingNodeComparator(
+                TreeConstructor.NodeComparator<DataType> nodeComparator,
+                TreeConstructorMetrics metrics) {
+            this.nodeComparator = nodeComparator;
+            this.metrics = metrics;
+            this.relationShipOverridden = relationShipOverridden(nodeComparator);
+        }
+
+        @Override
+        public boolean isParent(Node<DataType> parent, Node<DataType> child) {
+            metrics.isParentCount.increment();
+            return nodeComparator.isParent(parent, child);
+        }
+
+        @Override
+        public boolean equals(Node<DataType> node, Node<DataType> anotherNode) {
+            metrics.equalsCount.increment();
+            return nodeComparator.equals(node, anotherNode);
+        }
+
+        @Override
+        public RelationShip relationShip(Node<DataType> node, Node<DataType> anotherNode) {
+            metrics.relationShipCount.increment();
+            return relationShipOverridden
+                    ? nodeComparator.relationShip(node, anotherNode)
+                    : TreeConstructor.NodeComparator.super.relationShip(node, anotherNode);
+        }
+
+        @Override
+        public Object identityKey(Node<DataType> node) {
+            return nodeComparator.identityKey(node);
+        }
+
+        @Override
+        public Object linkKey(Node<DataType> node) {
+            return nodeComparator.linkKey(node);
+        }
+
+        @Override
+        public Object parentLinkKey(Node<DataType> node) {
+            return nodeComparator.parentLinkKey(node);
+        }
+
+        private static boolean relationShipOverridden(TreeConstructor.NodeComparator<?> nodeComparator) {
+            try {
+                return !nodeComparator.getClass()
+                        .getMethod("relationShip", Node.class, Node.class)
+                        .isDefault();
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Predicate;
+
+/**
+ * <p>
+ * prunes trees of {@link Node} to the nodes matching a predicate along with their ancestors,
+ * and optionally their descendants, such as the departments containing people in some role
+ * </p>
+ * <p>
+ * the result is a new forest in one pass, while the source trees are left untouched.
+ * the new nodes share the payloads with the source nodes, so the allocation is proportional to the result;
+ * the roots and the children keep the order of the source
+ * </p>
+ * <p>
+ * the parallel version splits sibling ranges and descends into subtrees as fork/join tasks
+ * until a depth limit derived from the parallelism level, below which every task filters its subtrees sequentially,
+ * so neither the deep trees recurse nor the wide ones create a task per node
+ * </p>
+ *
+ * @author ben.wangz
+ */
+public class TreeFilter<DataType extends Serializable> {
+    private static final int EXTRA_TASK_DEPTH = 4;
+    private final Predicate<DataType> predicate;
+    private final boolean keepDescendants;
+    private final int maxTaskDepth;
+
+    private TreeFilter(Predicate<DataType> predicate, boolean keepDescendants, int maxTaskDepth) {
+        this.predicate = predicate;
+        this.keepDescendants = keepDescendants;
+        this.maxTaskDepth = maxTaskDepth;
+    }
+
+    /**
+     * @param rootList        roots of the source trees
+     * @param predicate       condition of the nodes to keep
+     * @param keepDescendants whether to keep all the descendants of a matching node
+     * @param <DataType>      type of data
+     * @return roots of the filtered trees
+     */
+    public static <DataType extends Serializable> List<Node<DataType>> filter(
+            List<Node<DataType>> rootList,
+            Predicate<DataType> predicate,
+            boolean keepDescendants) {
+        TreeFilter<DataType> treeFilter = new TreeFilter<>(predicate, keepDescendants, 0);
+        List<Node<DataType>> filteredList = new ArrayList<>();
+        for (Node<DataType> root : rootList) {
+            Node<DataType> filtered = treeFilter.filterSequential(root, false);
+            if (null != filtered) {
+                filteredList.add(filtered);
+            }
+        }
+        return filteredList;
+    }
+
+    /**
+     * parallel version of {@link #filter(List, Predicate, boolean)},
+     * whose predicate is called concurrently, and is not called for the descendants of the matching nodes
+     * if {@code keepDescendants}
+     *
+     * @param rootList        roots of the source trees
+     * @param predicate       condition of the nodes to keep, which should be thread safe
+     * @param keepDescendants whether to keep all the descendants of a matching node
+     * @param parallelism     parallelism level of the {@link ForkJoinPool} to run in
+     * @param <DataType>      type of data
+     * @return roots of the filtered trees, the same as {@link #filter(List, Predicate, boolean)}
+     */
+    @SuppressWarnings("unchecked")
+    public static <DataType extends Serializable> List<Node<DataType>> filter(
+            List<Node<DataType>> rootList,
+            Predicate<DataType> predicate,
+            boolean keepDescendants,
+            int parallelism) {
+        // about 16 times as many leaf tasks as threads when only the sibling ranges are split
+        int maxTaskDepth = Integer.SIZE - Integer.numberOfLeadingZeros(parallelism) + EXTRA_TASK_DEPTH;
+        TreeFilter<DataType> treeFilter = new TreeFilter<>(predicate, keepDescendants, maxTaskDepth);
+        Node<DataType>[] filteredArray = new Node[rootList.size()];
+        ForkJoinPool forkJoinPool = new ForkJoinPool(parallelism);
+        try {
+            forkJoinPool.invoke(treeFilter.new SiblingTask(rootList, 0, rootList.size(), false, filteredArray, 0));
+        } finally {
+            forkJoinPool.shutdown();
+        }
+        List<Node<DataType>> filteredList = new ArrayList<>();
+        for (Node<DataType> filtered : filteredArray) {
+            if (null != filtered) {
+                filteredList.add(filtered);
+            }
+        }
+        return filteredList;
+    }
+
+    /**
+     * @param copyAll whether an ancestor matched and its descendants are kept, so the predicate is skipped
+     */
+    private Node<DataType> filterForked(Node<DataType> node, boolean copyAll, int taskDepth) {
+        boolean kept = copyAll || predicate.test(node.data());
+        if (0 == node.childCount()) {
+            return kept ? new Node<>(node.data()) : null;
+        }
+        List<Node<DataType>> childList = node.children();
+        @SuppressWarnings("unchecked")
+        Node<DataType>[] filteredChildArray = new Node[childList.size()];
+        new SiblingTask(childList, 0, childList.size(), kept && keepDescendants, filteredChildArray, taskDepth)
+                .invoke();
+        int filteredChildCount = 0;
+        for (Node<DataType> filteredChild : filteredChildArray) {
+            if (null != filteredChild) {
+                filteredChildCount++;
+            }
+        }
+        if (!kept && 0 == filteredChildCount) {
+            return null;
+        }
+        Node<DataType> filtered = new Node<>(node.data());
+        filtered.ensureChildCapacity(filteredChildCount);
+        for (Node<DataType> filteredChild : filteredChildArray) {
+            if (null != filteredChild) {
+                filtered.addChild(filteredChild);
+            }
+        }
+        return filtered;
+    }
+
+    /**
+     * post-order walk with an explicit stack, in which the filtered children of every open node
+     * are piled up until the node is closed
+     *
+     * @param copyAll whether an ancestor matched and its descendants are kept, so the predicate is skipped
+     * @return the filtered tree, or null if nothing kept
+     */
+    @SuppressWarnings("unchecked")
+    private Node<DataType> filterSequential(Node<DataType> root, boolean copyAll) {
+        Node<DataType>[] nodeStack = new Node[16];
+        // per open node: index of the next child, start of its filtered children in the pile, and whether it is kept
+        int[] nextChildStack = new int[16];
+        int[] pileStartStack = new int[16];
+        boolean[] keptStack = new boolean[16];
+        int stackSize = 0;
+        List<Node<DataType>> pile = new ArrayList<>();
+        nodeStack[stackSize] = root;
+        keptStack[stackSize] = copyAll || predicate.test(root.data());
+        stackSize++;
+        while (stackSize > 0) {
+            int top = stackSize - 1;
+            Node<DataType> node = nodeStack[top];
+            if (nextChildStack[top] < node.childCount()) {
+                Node<DataType> child = node.child(nextChildStack[top]++);
+                if (stackSize == nodeStack.length) {
+                    int capacity = stackSize << 1;
+                    nodeStack = Arrays.copyOf(nodeStack, capacity);
+                    nextChildStack = Arrays.copyOf(nextChildStack, capacity);
+                    pileStartStack = Arrays.copyOf(pileStartStack, capacity);
+                    keptStack = Arrays.copyOf(keptStack, capacity);
+                }
+                nodeStack[stackSize] = child;
+                nextChildStack[stackSize] = 0;
+                pileStartStack[stackSize] = pile.size();
+                keptStack[stackSize] = keptStack[top] && keepDescendants || predicate.test(child.data());
+                stackSize++;
+                continue;
+            }
+            stackSize--;
+            nodeStack[top] = null;
+            int pileStart = pileStartStack[top];
+            if (!keptStack[top] && pile.size() == pileStart) {
+                continue;
+            }
+            Node<DataType> filtered = new Node<>(node.data());
+            filtered.ensureChildCapacity(pile.size() - pileStart);
+            for (int index = pileStart; index < pile.size(); index++) {
+                filtered.addChild(pile.get(index));
+            }
+            pile.subList(pileStart, pile.size()).clear();
+            pile.add(filtered);
+        }
+        return pile.isEmpty() ? null : pile.get(0);
+    }
+
+    /**
+     * filters a range of siblings into the same range of {@code filteredArray}, null for the dropped ones
+     */
+    private class SiblingTask extends RecursiveAction {
+        private final List<Node<DataType>> siblingList;
+        private final int start;
+        private final int end;
+        private final boolean copyAll;
+        private final Node<DataType>[] filteredArray;
+        private final int taskDepth;
+
+        private SiblingTask(
+                List<Node<DataType>> siblingList,
+                int start,
+                int end,
+                boolean copyAll,
+                Node<DataType>[] filteredArray,
+                int taskDepth) {
+            this.siblingList = siblingList;
+            this.start = start;
+            this.end = end;
+            this.copyAll = copyAll;
+            this.filteredArray = filteredArray;
+            this.taskDepth = taskDepth;
+        }
+
+        @Override
+        protected void compute() {
+            if (taskDepth >= maxTaskDepth) {
+                for (int index = start; index < end; index++) {
+                    filteredArray[index] = filterSequential(siblingList.get(index), copyAll);
+                }
+            } else if (end - start > 1) {
+                int middle = (start + end) >>> 1;
+                invokeAll(
+                        new SiblingTask(siblingList, start, middle, copyAll, filteredArray, taskDepth + 1),
+                        new SiblingTask(siblingList, middle, end, copyAll, filteredArray, taskDepth + 1));
+            } else if (end - start == 1) {
+                filteredArray[start] = filterForked(siblingList.get(start), copyAll, taskDepth + 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * <p>
+ * immutable, array-backed snapshot of trees, which is frozen from {@link TreeConstructor#treeList()}
+ * </p>
+ * <p>
+ * nodes are numbered by a pre-order traversal of all the trees,
+ * so the subtree of node {@code index} is the contiguous range [{@code index}, {@link #subtreeEnd(int)}),
+ * and its first child is {@code index + 1} if the subtree has more than one node
+ * </p>
+ * <p>
+ * traversals work on the int arrays directly and never allocate per visited node
+ * </p>
+ *
+ * @author ben.wangz
+ */
+public class TreeSnapshot<DataType extends Serializable> implements Serializable {
+    public static final int NONE = -1;
+    private final Object[] dataArray;
+    private final int[] parentArray;
+    private final int[] depthArray;
+    private final int[] subtreeEndArray;
+    private final int[] rootArray;
+
+    private TreeSnapshot(Object[] dataArray, int[] parentArray) {
+        int size = dataArray.length;
+        this.dataArray = dataArray;
+        this.parentArray = parentArray;
+        this.depthArray = new int[size];
+        this.subtreeEndArray = new int[size];
+        int rootCount = 0;
+        for (int index = 0; index < size; index++) {
+            int parent = parentArray[index];
+            if (NONE == parent) {
+                rootCount++;
+            } else {
+                depthArray[index] = depthArray[parent] + 1;
+            }
+        }
+        // subtree sizes are accumulated bottom up, since every child is numbered after its parent
+        int[] subtreeSizeArray = subtreeEndArray;
+        Arrays.fill(subtreeSizeArray, 1);
+        for (int index = size - 1; index >= 0; index--) {
+            if (NONE != parentArray[index]) {
+                subtreeSizeArray[parentArray[index]] += subtreeSizeArray[index];
+            }
+        }
+        this.rootArray = new int[rootCount];
+        for (int index = 0, rootIndex = 0; index < size; index++) {
+            subtreeEndArray[index] += index;
+            if (NONE == parentArray[index]) {
+                rootArray[rootIndex++] = index;
+            }
+        }
+    }
+
+    /**
+     * @param rootList   root node list, usually returned by {@link TreeConstructor#treeList()}
+     * @param <DataType> type of data
+     * @return the snapshot of the trees
+     */
+    public static <DataType extends Serializable> TreeSnapshot<DataType> freeze(List<Node<DataType>> rootList) {
+        List<DataType> dataList = new ArrayList<>();
+        int[] parentArray = new int[Math.max(16, rootList.size())];
+        // the stacks are pushed and popped together
+        Deque<Node<DataType>> nodeStack = new ArrayDeque<>();
+        int[] parentStack = new int[16];
+        int stackSize = 0;
+        for (int rootIndex = rootList.size() - 1; rootIndex >= 0; rootIndex--) {
+            nodeStack.push(rootList.get(rootIndex));
+            parentStack = IntArrayUtils.ensureCapacity(parentStack, stackSize + 1);
+            parentStack[stackSize++] = NONE;
+        }
+        while (!nodeStack.isEmpty()) {
+            Node<DataType> node = nodeStack.pop();
+            int index = dataList.size();
+            dataList.add(node.data());
+            parentArray = IntArrayUtils.ensureCapacity(parentArray, index + 1);
+            parentArray[index] = parentStack[--stackSize];
+            parentStack = IntArrayUtils.ensureCapacity(parentStack, stackSize + node.childCount());
+            for (int childIndex = node.childCount() - 1; childIndex >= 0; childIndex--) {
+                nodeStack.push(node.child(childIndex));
+                parentStack[stackSize++] = index;
+            }
+        }
+        return new TreeSnapshot<>(dataList.toArray(), Arrays.copyOf(parentArray, dataList.size()));
+    }
+
+    /**
+     * @return number of nodes
+     */
+    public int size() {
+        return dataArray.length;
+    }
+
+    /**
+     * @return number of trees
+     */
+    public int rootCount() {
+        return rootArray.length;
+    }
+
+    /**
+     * @param rootIndex index in [0, {@link #rootCount()})
+     * @return the node index of the {@code rootIndex}-th root
+     */
+    public int root(int rootIndex) {
+        return rootArray[rootIndex];
+    }
+
+    @SuppressWarnings("unchecked")
+    public DataType data(int index) {
+        return (DataType) dataArray[index];
+    }
+
+    /**
+     * @param index node index
+     * @return parent node index, or {@link #NONE} for a root
+     */
+    public int parent(int index) {
+        return parentArray[index];
+    }
+
+    /**
+     * @param index node index
+     * @return depth of the node, which is 0 for a root
+     */
+    public int depth(int index) {
+        return depthArray[index];
+    }
+
+    /**
+     * @param index node index
+     * @return the exclusive end of the node index range of the subtree
+     */
+    public int subtreeEnd(int index) {
+        return subtreeEndArray[index];
+    }
+
+    public int subtreeSize(int index) {
+        return subtreeEndArray[index] - index;
+    }
+
+    /**
+     * @param index node index
+     * @return index of the first child, or {@link #NONE} for a leaf
+     */
+    public int firstChild(int index) {
+        return index + 1 < subtreeEndArray[index] ? index + 1 : NONE;
+    }
+
+    /**
+     * @param index node index
+     * @return index of the next sibling (the next root for a root), or {@link #NONE} for the last one
+     */
+    public int nextSibling(int index) {
+        int next = subtreeEndArray[index];
+        int parent = parentArray[index];
+        int limit = NONE == parent ? dataArray.length : subtreeEndArray[parent];
+        return next < limit ? next : NONE;
+    }
+
+    /**
+     * O(1) by comparing the pre-order ranges
+     *
+     * @param ancestor   node index of the ancestor to test
+     * @param descendant node index of the descendant to test
+     * @return true if {@code ancestor} is a proper ancestor of {@code descendant}
+     */
+    public boolean isAncestor(int ancestor, int descendant) {
+        return ancestor < descendant && descendant < subtreeEndArray[ancestor];
+    }
+
+    public void forEachPreOrder(IntConsumer consumer) {
+        for (int index = 0; index < dataArray.length; index++) {
+            consumer.accept(index);
+        }
+    }
+
+    public void forEachPreOrder(int index, IntConsumer consumer) {
+        for (int current = index, end = subtreeEndArray[index]; current < end; current++) {
+            consumer.accept(current);
+        }
+    }
+
+    public void forEachPostOrder(IntConsumer consumer) {
+        for (int root : rootArray) {
+            forEachPostOrder(root, consumer);
+        }
+    }
+
+    public void forEachPostOrder(int index, IntConsumer consumer) {
+        int current = descendToFirstLeaf(index);
+        while (true) {
+            consumer.accept(current);
+            if (current == index) {
+                return;
+            }
+            int nextSibling = nextSibling(current);
+            current = NONE == nextSibling ? parentArray[current] : descendToFirstLeaf(nextSibling);
+        }
+    }
+
+    public void forEachBreadthFirst(IntConsumer consumer) {
+        for (int root : rootArray) {
+            forEachBreadthFirst(root, consumer);
+        }
+    }
+
+    /**
+     * allocates one int array of the subtree size per traversal, nothing per visited node
+     *
+     * @param index    node index of the subtree root
+     * @param consumer consumer of node indexes
+     */
+    public void forEachBreadthFirst(int index, IntConsumer consumer) {
+        int[] queue = new int[subtreeSize(index)];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = index;
+        while (head < tail) {
+            int current = queue[head++];
+            consumer.accept(current);
+            for (int child = firstChild(current); NONE != child; child = nextSibling(child)) {
+                queue[tail++] = child;
+            }
+        }
+    }
+
+    private int descendToFirstLeaf(int index) {
+        int current = index;
+        while (current + 1 < subtreeEndArray[current]) {
+            current++;
+        }
+        return current;
+    }
+}
@@ -0,0 +1,154 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * <p>
+ * validation of the parent links, which is checked in O(N) while building trees
+ * by {@link TreeConstructor#build(Collection, TreeValidation)}
+ * </p>
+ * <p>
+ * a cycle is a group of data linked to each other by parent ids, which would never show up in any tree;
+ * an orphan is a data whose parent id is neither null nor empty, but matches no id
+ * </p>
+ *
+ * @author ben.wangz
+ */
+public class TreeValidation<DataType extends LinkableDataType> {
+    private static final int MAX_REPORTED = 10;
+
+    public enum CyclePolicy {
+        /**
+         * throw a {@link RuntimeException} describing the cycles
+         */
+        FAIL,
+        /**
+         * the member of a cycle coming first in the data collection becomes a root
+         */
+        BREAK
+    }
+
+    public enum OrphanPolicy {
+        /**
+         * the orphans become roots, just like building without validation
+         */
+        KEEP_AS_ROOT,
+        /**
+         * the orphans become children of a synthetic root, which is the last root
+         */
+        ATTACH_TO_SYNTHETIC_ROOT,
+        /**
+         * throw a {@link RuntimeException} describing the orphans
+         */
+        FAIL
+    }
+
+    private final CyclePolicy cyclePolicy;
+    private final OrphanPolicy orphanPolicy;
+    private final DataType syntheticRoot;
+    private final Consumer<Report> reportConsumer;
+
+    public TreeValidation(CyclePolicy cyclePolicy, OrphanPolicy orphanPolicy) {
+        this(cyclePolicy, orphanPolicy, null, report -> {
+        });
+    }
+
+    /**
+     * @param cyclePolicy    what to do with cycles
+     * @param orphanPolicy   what to do with orphans
+     * @param syntheticRoot  data of the synthetic root, required by {@link OrphanPolicy#ATTACH_TO_SYNTHETIC_ROOT}
+     * @param reportConsumer consumer of the report, which is called before any policy is applied
+     */
+    public TreeValidation(
+            CyclePolicy cyclePolicy,
+            OrphanPolicy orphanPolicy,
+            DataType syntheticRoot,
+            Consumer<Report> reportConsumer) {
+        if (OrphanPolicy.ATTACH_TO_SYNTHETIC_ROOT == orphanPolicy && null == syntheticRoot) {
+            throw new IllegalArgumentException(
+                    String.format("syntheticRoot is required by orphanPolicy(%s)", orphanPolicy));
+        }
+        this.cyclePolicy = cyclePolicy;
+        this.orphanPolicy = orphanPolicy;
+        this.syntheticRoot = syntheticRoot;
+        this.reportConsumer = reportConsumer;
+    }
+
+    public CyclePolicy cyclePolicy() {
+        return cyclePolicy;
+    }
+
+    public OrphanPolicy orphanPolicy() {
+        return orphanPolicy;
+    }
+
+    public DataType syntheticRoot() {
+        return syntheticRoot;
+    }
+
+    void report(Report report) {
+        reportConsumer.accept(report);
+        boolean cycleFailed = CyclePolicy.FAIL == cyclePolicy && !report.cycleList().isEmpty();
+        boolean orphanFailed = OrphanPolicy.FAIL == orphanPolicy && !report.orphanIdList().isEmpty();
+        if (cycleFailed || orphanFailed) {
+            throw new RuntimeException(String.format("invalid parent links found, %s", report));
+        }
+    }
+
+    /**
+     * cycles and orphans found, whose toString is kept short no matter how many are found
+     */
+    public static class Report {
+        private final List<List<String>> cycleList;
+        private final List<String> orphanIdList;
+
+        Report(List<List<String>> cycleList, List<String> orphanIdList) {
+            this.cycleList = Collections.unmodifiableList(cycleList);
+            this.orphanIdList = Collections.unmodifiableList(orphanIdList);
+        }
+
+        /**
+         * @return ids of every cycle, starting from the member coming first in the data collection,
+         * each followed by its parent
+         */
+        public List<List<String>> cycleList() {
+            return cycleList;
+        }
+
+        public List<String> orphanIdList() {
+            return orphanIdList;
+        }
+
+        public boolean valid() {
+            return cycleList.isEmpty() && orphanIdList.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("cycles(%s): %s, orphans(%s): %s",
+                    cycleList.size(),
+                    abbreviate(cycleList.stream()
+                            .limit(MAX_REPORTED)
+                            .map(cycle -> abbreviate(cycle, " -> "))
+                            .collect(Collectors.toList()), ", ", cycleList.size()),
+                    orphanIdList.size(),
+                    abbreviate(orphanIdList, ", "));
+        }
+
+        private static String abbreviate(List<String> idList, String delimiter) {
+            return abbreviate(idList.stream().limit(MAX_REPORTED).collect(Collectors.toList()), delimiter, idList.size());
+        }
+
+        private static String abbreviate(List<String> limitedList, String delimiter, int size) {
+            return limitedList.stream()
+                    .collect(Collectors.joining(
+                            delimiter, "[", size > limitedList.size()
+                                    ? String.format("%s... %s more]", delimiter, size - limitedList.size())
+                                    : "]"));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @author ben.wangz
+ */
+public class AncestryIndexTest {
+    private final List<Node<Integer>> nodeList = new ArrayList<>();
+    private AncestryIndex<Integer> ancestryIndex;
+
+    @Before
+    public void before() throws Exception {
+        Random random = new Random(0);
+        List<Node<Integer>> rootList = new ArrayList<>();
+        for (int index = 0; index < 3000; index++) {
+            Node<Integer> node = new Node<>(index);
+            if (index % 1000 == 0) {
+                rootList.add(node);
+            } else {
+                // mostly deep and narrow
+                int parent = random.nextInt(4) == 0 ? random.nextInt(index) : index - 1;
+                nodeList.get(parent).addChild(node);
+            }
+            nodeList.add(node);
+        }
+        ancestryIndex = AncestryIndex.of(rootList);
+    }
+
+    @Test
+    public void test() {
+        Assert.assertEquals(nodeList.size(), ancestryIndex.size());
+        Random random = new Random(1);
+        for (int round = 0; round < 20000; round++) {
+            Node<Integer> node = nodeList.get(random.nextInt(nodeList.size()));
+            Node<Integer> anotherNode = nodeList.get(random.nextInt(nodeList.size()));
+            List<Node<Integer>> path = path(node);
+            List<Node<Integer>> anotherPath = path(anotherNode);
+            Assert.assertEquals(path.size() - 1, ancestryIndex.depth(node));
+            Assert.assertEquals(
+                    node != anotherNode && anotherPath.contains(node),
+                    ancestryIndex.isAncestor(node, anotherNode));
+            Assert.assertSame(lowestCommonAncestor(path, anotherPath), ancestryIndex.lowestCommonAncestor(node, anotherNode));
+            int k = random.nextInt(path.size() + 1);
+            Assert.assertSame(
+                    k < path.size() ? path.get(path.size() - 1 - k) : null,
+                    ancestryIndex.kthAncestor(node, k));
+        }
+    }
+
+    @Test
+    public void testSubtree() {
+        Node<Integer> subtreeRoot = nodeList.get(1500);
+        AncestryIndex<Integer> subtreeIndex = AncestryIndex.of(subtreeRoot);
+        Assert.assertEquals(0, subtreeIndex.depth(subtreeRoot));
+        Assert.assertNull(subtreeIndex.kthAncestor(subtreeRoot, 1));
+        Assert.assertSame(subtreeRoot, subtreeIndex.lowestCommonAncestor(subtreeRoot, subtreeRoot));
+    }
+
+    @Test
+    public void testDeepChain() {
+        Node<Integer> root = new Node<>(0);
+        Node<Integer> leaf = root;
+        for (int index = 1; index < 100000; index++) {
+            Node<Integer> node = new Node<>(index);
+            leaf.addChild(node);
+            leaf = node;
+        }
+        AncestryIndex<Integer> chainIndex = AncestryIndex.of(root);
+        Assert.assertEquals(99999, chainIndex.depth(leaf));
+        Assert.assertEquals(Integer.valueOf(12345), chainIndex.kthAncestor(leaf, 99999 - 12345).data());
+        Node<Integer> middle = chainIndex.kthAncestor(leaf, 50000);
+        Assert.assertSame(middle, chainIndex.lowestCommonAncestor(leaf, middle));
+        Assert.assertTrue(chainIndex.isAncestor(root, leaf));
+        Assert.assertFalse(chainIndex.isAncestor(leaf, root));
+    }
+
+    @Test
+    public void testDifferentTrees() {
+        Assert.assertNull(ancestryIndex.lowestCommonAncestor(nodeList.get(1000), nodeList.get(2000)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownNode() {
+        ancestryIndex.depth(new Node<>(-1));
+    }
+
+    @Test
+    public void testParentNodeIterator() {
+        Node<Integer> node = nodeList.get(2999);
+        List<Node<Integer>> ancestorList = new ArrayList<>();
+        node.parentNodeIterator().forEachRemaining(ancestorList::add);
+        List<Node<Integer>> path = path(node);
+        Assert.assertEquals(path.subList(0, path.size() - 1), ImmutableList.copyOf(ancestorList).reverse());
+    }
+
+    /**
+     * @return nodes from the root down to {@code node}
+     */
+    private static List<Node<Integer>> path(Node<Integer> node) {
+        List<Node<Integer>> path = new ArrayList<>();
+        for (Node<Integer> current = node; null != current; current = current.parent()) {
+            path.add(0, current);
+        }
+        return path;
+    }
+
+    private static Node<Integer> lowestCommonAncestor(List<Node<Integer>> path, List<Node<Integer>> anotherPath) {
+        Node<Integer> lowestCommonAncestor = null;
+        for (int index = 0; index < Math.min(path.size(), anotherPath.size()); index++) {
+            if (path.get(index) != anotherPath.get(index)) {
+                break;
+            }
+            lowestCommonAncestor = path.get(index);
+        }
+        return lowestCommonAncestor;
+    }
+}
@@ -0,0 +1,81 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * @author ben.wangz
+ */
+public class ConcurrentTreeConstructorTest {
+    @Test
+    public void test() throws Exception {
+        List<TreeConstructorTest.LinkableData> dataList = TreeConstructorTest.randomForest(10000, new Random(0));
+        int producerCount = 4;
+        ConcurrentTreeConstructor<TreeConstructorTest.LinkableData> concurrentTreeConstructor
+                = new ConcurrentTreeConstructor<>(LinkableDataType.nodeComparator(), producerCount);
+        produce(concurrentTreeConstructor, dataList, producerCount);
+        List<Node<TreeConstructorTest.LinkableData>> treeList = concurrentTreeConstructor.treeList();
+        Assert.assertEquals(
+                TreeConstructorTest.canonical(TreeConstructor.build(dataList)),
+                TreeConstructorTest.canonical(treeList));
+        // the snapshot is reused until any node is linked
+        Assert.assertSame(treeList, concurrentTreeConstructor.treeList());
+        // the snapshot is detached from the nodes still being linked
+        concurrentTreeConstructor.add(new Node<>(new TreeConstructorTest.LinkableData("orphan", "")));
+        List<Node<TreeConstructorTest.LinkableData>> newTreeList = concurrentTreeConstructor.treeList();
+        Assert.assertEquals(treeList.size() + 1, newTreeList.size());
+        Assert.assertEquals(
+                TreeConstructorTest.canonical(TreeConstructor.build(dataList)),
+                TreeConstructorTest.canonical(treeList));
+        // only the changed trees are copied again
+        Set<Node<TreeConstructorTest.LinkableData>> treeSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        treeSet.addAll(treeList);
+        Assert.assertEquals(
+                treeList.size(),
+                newTreeList.stream().filter(treeSet::contains).count());
+        String rootId = treeList.get(0).data().id();
+        concurrentTreeConstructor.add(new Node<>(new TreeConstructorTest.LinkableData("leaf", rootId)));
+        List<Node<TreeConstructorTest.LinkableData>> lastTreeList = concurrentTreeConstructor.treeList();
+        Assert.assertEquals(
+                treeList.size() - 1,
+                lastTreeList.stream().filter(treeSet::contains).count());
+        Assert.assertTrue(lastTreeList.stream()
+                .filter(root -> rootId.equals(root.data().id()))
+                .allMatch(root -> !treeSet.contains(root)
+                        && root.children().stream().anyMatch(child -> "leaf".equals(child.data().id()))));
+
+        concurrentTreeConstructor.clear();
+        Assert.assertTrue(concurrentTreeConstructor.treeList().isEmpty());
+    }
+
+    private static <DataType extends LinkableDataType> void produce(
+            ConcurrentTreeConstructor<DataType> concurrentTreeConstructor,
+            List<DataType> dataList,
+            int producerCount) throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(producerCount);
+        try {
+            List<Future<?>> futureList = IntStream.range(0, producerCount)
+                    .mapToObj(producer -> executorService.submit(() ->
+                            IntStream.range(0, dataList.size())
+                                    .filter(index -> index % producerCount == producer)
+                                    .forEach(index -> concurrentTreeConstructor.add(new Node<>(dataList.get(index))))))
+                    .collect(Collectors.toList());
+            for (Future<?> future : futureList) {
+                future.get();
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+}
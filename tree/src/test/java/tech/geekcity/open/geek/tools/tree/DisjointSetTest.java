@@ -0,0 +1,34 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.stream.IntStream;
+
+/**
+ * @author ben.wangz
+ */
+public class DisjointSetTest {
+    @Test
+    public void test() {
+        DisjointSet disjointSet = new DisjointSet();
+        IntStream.range(0, 100).forEach(index -> Assert.assertEquals(index, disjointSet.makeSet()));
+        Assert.assertEquals(100, disjointSet.size());
+        // merge evens and odds separately
+        IntStream.range(2, 100).forEach(index -> disjointSet.union(index - 2, index));
+        IntStream.range(0, 100).forEach(index ->
+                Assert.assertEquals(disjointSet.find(index % 2), disjointSet.find(index)));
+        Assert.assertNotEquals(disjointSet.find(0), disjointSet.find(1));
+        int root = disjointSet.union(98, 99);
+        IntStream.range(0, 100).forEach(index -> Assert.assertEquals(root, disjointSet.find(index)));
+
+        disjointSet.clear();
+        Assert.assertEquals(0, disjointSet.size());
+        Assert.assertEquals(0, disjointSet.makeSet());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testUnknownId() {
+        new DisjointSet().find(0);
+    }
+}
@@ -0,0 +1,212 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * @author ben.wangz
+ */
+public class ExternalTreeConstructorTest {
+    // small enough to spill a run every about 4000 data
+    private static final long MEMORY_BUDGET = 512 * 1024;
+    private Path workDirectory;
+
+    @Before
+    public void before() throws Exception {
+        workDirectory = Files.createTempDirectory("external-tree");
+    }
+
+    @After
+    public void after() throws Exception {
+        try (Stream<Path> pathStream = Files.list(workDirectory)) {
+            Assert.assertEquals("work directory should be deleted", 0, pathStream.count());
+        }
+        Files.delete(workDirectory);
+    }
+
+    @Test
+    public void test() throws IOException {
+        List<TreeConstructorTest.LinkableData> dataList = TreeConstructorTest.randomForest(50000, new Random(0));
+        // an orphan, whose parent id matches no id
+        dataList.add(new TreeConstructorTest.LinkableData("orphan", "missing"));
+        dataList.add(new TreeConstructorTest.LinkableData("orphan-child", "orphan"));
+        try (ExternalTreeConstructor.ExternalTrees<TreeConstructorTest.LinkableData> externalTrees
+                     = build(dataList, 2)) {
+            Assert.assertEquals(dataList.size(), externalTrees.size());
+            Assert.assertEquals(dataList.size(), externalTrees.nodeCount());
+            List<Node<TreeConstructorTest.LinkableData>> rootList = new ArrayList<>();
+            externalTrees.treeIterator().forEachRemaining(rootList::add);
+            Assert.assertEquals(externalTrees.rootCount(), rootList.size());
+            Assert.assertEquals(
+                    TreeConstructorTest.canonical(TreeConstructor.build(dataList)),
+                    TreeConstructorTest.canonical(rootList));
+            // children keep the insertion order, while roots come in the order of their parent ids
+            Map<String, Integer> positionIdKeyed = new HashMap<>();
+            for (int position = 0; position < dataList.size(); position++) {
+                positionIdKeyed.put(dataList.get(position).id(), position);
+            }
+            TreeSnapshot<TreeConstructorTest.LinkableData> treeSnapshot = TreeSnapshot.freeze(rootList);
+            List<String> preOrderList = new ArrayList<>();
+            externalTrees.forEachPreOrder((data, depth) -> {
+                Assert.assertEquals(depth, treeSnapshot.depth(preOrderList.size()));
+                preOrderList.add(data.id());
+            });
+            Assert.assertEquals(treeSnapshot.size(), preOrderList.size());
+            for (int index = 0; index < treeSnapshot.size(); index++) {
+                Assert.assertEquals(treeSnapshot.data(index).id(), preOrderList.get(index));
+                int previous = index - 1;
+                if (previous >= 0
+                        && TreeSnapshot.NONE != treeSnapshot.parent(index)
+                        && treeSnapshot.parent(index) == treeSnapshot.parent(previous)) {
+                    Assert.assertTrue(positionIdKeyed.get(treeSnapshot.data(previous).id())
+                            < positionIdKeyed.get(treeSnapshot.data(index).id()));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDeepChain() throws IOException {
+        List<TreeConstructorTest.LinkableData> dataList = new ArrayList<>();
+        for (int index = 0; index < 100000; index++) {
+            dataList.add(new TreeConstructorTest.LinkableData(
+                    String.valueOf(index), 0 == index ? null : String.valueOf(index - 1)));
+        }
+        try (ExternalTreeConstructor.ExternalTrees<TreeConstructorTest.LinkableData> externalTrees
+                     = build(dataList, 4)) {
+            Assert.assertEquals(1, externalTrees.rootCount());
+            int[] count = {0};
+            externalTrees.forEachPreOrder((data, depth) -> {
+                Assert.assertEquals(String.valueOf(depth), data.id());
+                count[0]++;
+            });
+            Assert.assertEquals(dataList.size(), count[0]);
+        }
+    }
+
+    @Test
+    public void testCycle() throws IOException {
+        List<TreeConstructorTest.LinkableData> dataList = ImmutableList.of(
+                new TreeConstructorTest.LinkableData("a", ""),
+                new TreeConstructorTest.LinkableData("b", "c"),
+                new TreeConstructorTest.LinkableData("c", "b"),
+                new TreeConstructorTest.LinkableData("d", "c"));
+        try (ExternalTreeConstructor.ExternalTrees<TreeConstructorTest.LinkableData> externalTrees
+                     = build(dataList, 2)) {
+            Assert.assertEquals(4, externalTrees.size());
+            Assert.assertEquals(1, externalTrees.rootCount());
+            Assert.assertEquals(1, externalTrees.nodeCount());
+            // b and c are in the cycle, d is below it
+            Assert.assertEquals(3, externalTrees.unreachableCount());
+            Assert.assertEquals(ImmutableList.of("b", "c", "d"), externalTrees.unreachableIdList());
+            Iterator<Node<TreeConstructorTest.LinkableData>> treeIterator = externalTrees.treeIterator();
+            Assert.assertEquals(
+                    ImmutableList.of("a[]"),
+                    TreeConstructorTest.canonical(ImmutableList.of(treeIterator.next())));
+            Assert.assertFalse(treeIterator.hasNext());
+        }
+    }
+
+    @Test
+    public void testEqualDuplicate() throws IOException {
+        List<TreeConstructorTest.LinkableData> dataList = TreeConstructorTest.randomForest(10000, new Random(0));
+        List<TreeConstructorTest.LinkableData> duplicateList = new ArrayList<>(dataList);
+        // the same data added again, in a different order
+        for (int index = dataList.size() - 1; index >= 0; index -= 3) {
+            TreeConstructorTest.LinkableData data = dataList.get(index);
+            duplicateList.add(new TreeConstructorTest.LinkableData(data.id(), data.parentId()));
+        }
+        try (ExternalTreeConstructor.ExternalTrees<TreeConstructorTest.LinkableData> externalTrees
+                     = build(duplicateList, 2)) {
+            Assert.assertEquals(duplicateList.size(), externalTrees.size());
+            Assert.assertEquals(duplicateList.size() - dataList.size(), externalTrees.omittedCount());
+            Assert.assertEquals(dataList.size(), externalTrees.nodeCount());
+            Assert.assertEquals(0, externalTrees.unreachableCount());
+            List<Node<TreeConstructorTest.LinkableData>> rootList = new ArrayList<>();
+            externalTrees.treeIterator().forEachRemaining(rootList::add);
+            Assert.assertEquals(
+                    TreeConstructorTest.canonical(TreeConstructor.build(dataList)),
+                    TreeConstructorTest.canonical(rootList));
+        }
+    }
+
+    @Test
+    public void testTreeIteratorClose() throws IOException {
+        List<TreeConstructorTest.LinkableData> dataList = TreeConstructorTest.randomForest(1000, new Random(0));
+        try (ExternalTreeConstructor.ExternalTrees<TreeConstructorTest.LinkableData> externalTrees
+                     = build(dataList, 2)) {
+            Assert.assertTrue(externalTrees.rootCount() > 1);
+            Node<TreeConstructorTest.LinkableData> root;
+            try (ExternalTreeConstructor.ExternalTrees.TreeIterator<TreeConstructorTest.LinkableData> treeIterator
+                         = externalTrees.treeIterator()) {
+                root = treeIterator.next();
+            }
+            try (ExternalTreeConstructor.ExternalTrees.TreeIterator<TreeConstructorTest.LinkableData> treeIterator
+                         = externalTrees.treeIterator()) {
+                Assert.assertEquals(
+                        TreeConstructorTest.canonical(ImmutableList.of(root)),
+                        TreeConstructorTest.canonical(ImmutableList.of(treeIterator.next())));
+                treeIterator.close();
+                Assert.assertFalse(treeIterator.hasNext());
+            }
+        }
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        try (ExternalTreeConstructor.ExternalTrees<TreeConstructorTest.LinkableData> externalTrees
+                     = build(ImmutableList.of(), 2)) {
+            Assert.assertEquals(0, externalTrees.rootCount());
+            Assert.assertFalse(externalTrees.treeIterator().hasNext());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDifferentDataWithSameId() throws IOException {
+        List<TreeConstructorTest.LinkableData> dataList = TreeConstructorTest.randomForest(10000, new Random(0));
+        dataList.add(new TreeConstructorTest.LinkableData("9999", ""));
+        build(dataList, 2).close();
+    }
+
+    private ExternalTreeConstructor.ExternalTrees<TreeConstructorTest.LinkableData> build(
+            List<TreeConstructorTest.LinkableData> dataList,
+            int mergeFanIn) throws IOException {
+        try (ExternalTreeConstructor<TreeConstructorTest.LinkableData> externalTreeConstructor
+                     = new ExternalTreeConstructor<>(
+                workDirectory,
+                MEMORY_BUDGET,
+                mergeFanIn,
+                ExternalTreeConstructorTest::encode,
+                ExternalTreeConstructorTest::decode)) {
+            for (TreeConstructorTest.LinkableData data : dataList) {
+                externalTreeConstructor.add(data);
+            }
+            return externalTreeConstructor.build();
+        }
+    }
+
+    private static byte[] encode(TreeConstructorTest.LinkableData data) {
+        return String.format("%s\n%s", data.id(), null == data.parentId() ? "" : data.parentId())
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static TreeConstructorTest.LinkableData decode(byte[] bytes) {
+        String[] fieldArray = new String(bytes, StandardCharsets.UTF_8).split("\n", -1);
+        return new TreeConstructorTest.LinkableData(fieldArray[0], fieldArray[1]);
+    }
+}
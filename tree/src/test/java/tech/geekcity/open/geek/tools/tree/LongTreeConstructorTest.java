@@ -0,0 +1,130 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * @author ben.wangz
+ */
+public class LongTreeConstructorTest {
+    static class LongData implements LongLinkableDataType {
+        private final long id;
+        private final long parentId;
+
+        LongData(long id, long parentId) {
+            this.id = id;
+            this.parentId = parentId;
+        }
+
+        @Override
+        public long id() {
+            return id;
+        }
+
+        @Override
+        public long parentId() {
+            return parentId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id, parentId);
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof LongData)) {
+                return false;
+            }
+            LongData longData = (LongData) object;
+            return id == longData.id && parentId == longData.parentId;
+        }
+    }
+
+    @Test
+    public void test() {
+        List<LongData> dataList = ImmutableList.of(
+                new LongData(3, 1),
+                new LongData(1, LongLinkableDataType.NO_PARENT),
+                new LongData(2, 1),
+                new LongData(4, 2),
+                new LongData(1, LongLinkableDataType.NO_PARENT),
+                // an orphan, whose parent id matches no id
+                new LongData(5, 100));
+        List<Node<LongData>> rootList = LongTreeConstructor.build(dataList);
+        Assert.assertEquals(2, rootList.size());
+        Assert.assertEquals(1L, rootList.get(0).data().id);
+        Assert.assertEquals(5L, rootList.get(1).data().id);
+        // children keep the order of the collection
+        Assert.assertEquals(
+                ImmutableList.of(3L, 2L),
+                rootList.get(0).children().stream().map(child -> child.data().id).collect(Collectors.toList()));
+        Assert.assertEquals(ImmutableList.of("1[2[4[]], 3[]]", "5[]"), canonical(rootList, 0));
+    }
+
+    @Test
+    public void testRandom() {
+        List<TreeConstructorTest.LinkableData> stringDataList
+                = TreeConstructorTest.randomForest(100000, new Random(0));
+        // ids differing only in the high bits, so the hash should spread them
+        List<LongData> dataList = stringDataList.stream()
+                .map(data -> new LongData(
+                        Long.parseLong(data.id()) << 32,
+                        data.parentId().isEmpty()
+                                ? LongLinkableDataType.NO_PARENT : Long.parseLong(data.parentId()) << 32))
+                .collect(Collectors.toList());
+        List<Node<LongData>> rootList = LongTreeConstructor.build(dataList);
+        List<Node<TreeConstructorTest.LinkableData>> expectedRootList = TreeConstructor.build(stringDataList);
+        Assert.assertEquals(
+                TreeConstructorTest.canonical(expectedRootList),
+                canonical(rootList, 32));
+        Assert.assertEquals(
+                expectedRootList.stream().map(root -> Long.parseLong(root.data().id()) << 32)
+                        .collect(Collectors.toList()),
+                rootList.stream().map(root -> root.data().id).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testEmpty() {
+        Assert.assertTrue(LongTreeConstructor.build(ImmutableList.<LongData>of()).isEmpty());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testDuplicateId() {
+        LongTreeConstructor.build(ImmutableList.of(
+                new LongData(1, LongLinkableDataType.NO_PARENT),
+                new LongData(1, 2)));
+    }
+
+    @Test
+    public void testLongIntHashMap() {
+        LongIntHashMap longIntHashMap = new LongIntHashMap(0);
+        for (int value = 0; value < 1000; value++) {
+            Assert.assertEquals(LongIntHashMap.NONE, longIntHashMap.putIfAbsent(value * 1024L - 500, value));
+        }
+        Assert.assertEquals(1000, longIntHashMap.size());
+        Assert.assertEquals(7, longIntHashMap.putIfAbsent(7 * 1024L - 500, 0));
+        for (int value = 0; value < 1000; value++) {
+            Assert.assertEquals(value, longIntHashMap.get(value * 1024L - 500));
+        }
+        Assert.assertEquals(LongIntHashMap.NONE, longIntHashMap.get(Long.MIN_VALUE));
+        Assert.assertEquals(LongIntHashMap.NONE, longIntHashMap.putIfAbsent(Long.MIN_VALUE, 0));
+        Assert.assertEquals(0, longIntHashMap.get(Long.MIN_VALUE));
+    }
+
+    /**
+     * the same as {@link TreeConstructorTest#canonical(List)}, with every id shifted right by {@code shift} bits
+     */
+    private static List<String> canonical(List<Node<LongData>> rootList, int shift) {
+        return rootList.stream()
+                .map(root -> (root.data().id >> shift) + canonical(root.children(), shift).toString())
+                .sorted()
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,100 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @author ben.wangz
+ */
+public class MappedTreeSnapshotTest {
+    private Path path;
+
+    @Before
+    public void before() throws Exception {
+        path = Files.createTempFile("tree-snapshot", ".bin");
+    }
+
+    @After
+    public void after() throws Exception {
+        Files.deleteIfExists(path);
+    }
+
+    @Test
+    public void test() throws Exception {
+        List<Node<TreeConstructorTest.LinkableData>> rootList
+                = TreeConstructor.build(TreeConstructorTest.randomForest(20000, new Random(0)));
+        TreeSnapshot<TreeConstructorTest.LinkableData> treeSnapshot = TreeSnapshot.freeze(rootList);
+        MappedTreeSnapshot.write(treeSnapshot, path, MappedTreeSnapshotTest::encode);
+        // tiny chunks to make payloads span chunks
+        for (int chunkSize : new int[]{7, 1 << 30}) {
+            MappedTreeSnapshot<TreeConstructorTest.LinkableData> mappedTreeSnapshot
+                    = MappedTreeSnapshot.open(path, MappedTreeSnapshotTest::decode, chunkSize);
+            Assert.assertEquals(treeSnapshot.size(), mappedTreeSnapshot.size());
+            Assert.assertEquals(treeSnapshot.rootCount(), mappedTreeSnapshot.rootCount());
+            for (int rootIndex = 0; rootIndex < treeSnapshot.rootCount(); rootIndex++) {
+                Assert.assertEquals(treeSnapshot.root(rootIndex), mappedTreeSnapshot.root(rootIndex));
+            }
+            for (int index = 0; index < treeSnapshot.size(); index++) {
+                Assert.assertEquals(treeSnapshot.data(index).id(), mappedTreeSnapshot.data(index).id());
+                Assert.assertEquals(treeSnapshot.data(index).parentId(), mappedTreeSnapshot.data(index).parentId());
+                Assert.assertEquals(treeSnapshot.parent(index), mappedTreeSnapshot.parent(index));
+                Assert.assertEquals(treeSnapshot.depth(index), mappedTreeSnapshot.depth(index));
+                Assert.assertEquals(treeSnapshot.subtreeEnd(index), mappedTreeSnapshot.subtreeEnd(index));
+                Assert.assertEquals(treeSnapshot.firstChild(index), mappedTreeSnapshot.firstChild(index));
+                Assert.assertEquals(treeSnapshot.nextSibling(index), mappedTreeSnapshot.nextSibling(index));
+            }
+            Assert.assertEquals(
+                    TreeConstructorTest.ordered(rootList.subList(3, 4)),
+                    TreeConstructorTest.ordered(ImmutableList.of(
+                            mappedTreeSnapshot.subtree(mappedTreeSnapshot.root(3)))));
+        }
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        MappedTreeSnapshot.write(TreeSnapshot.<String>freeze(ImmutableList.of()), path, MappedTreeSnapshotTest::utf8);
+        MappedTreeSnapshot<String> mappedTreeSnapshot = MappedTreeSnapshot.open(path, MappedTreeSnapshotTest::utf8);
+        Assert.assertEquals(0, mappedTreeSnapshot.size());
+        Assert.assertEquals(0, mappedTreeSnapshot.rootCount());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testIndexOutOfBounds() throws Exception {
+        MappedTreeSnapshot.write(
+                TreeSnapshot.freeze(ImmutableList.of(new Node<>("a"))), path, MappedTreeSnapshotTest::utf8);
+        MappedTreeSnapshot.open(path, MappedTreeSnapshotTest::utf8).data(1);
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotSnapshot() throws Exception {
+        Files.write(path, "not a tree snapshot".getBytes(StandardCharsets.UTF_8));
+        MappedTreeSnapshot.open(path, MappedTreeSnapshotTest::utf8);
+    }
+
+    private static byte[] encode(TreeConstructorTest.LinkableData data) {
+        return utf8(data.id() + "," + data.parentId());
+    }
+
+    private static TreeConstructorTest.LinkableData decode(byte[] bytes) {
+        String[] fieldArray = utf8(bytes).split(",", -1);
+        return new TreeConstructorTest.LinkableData(fieldArray[0], fieldArray[1]);
+    }
+
+    private static byte[] utf8(String string) {
+        return string.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String utf8(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
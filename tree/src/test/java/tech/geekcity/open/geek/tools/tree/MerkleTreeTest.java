@@ -0,0 +1,205 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * @author ben.wangz
+ */
+public class MerkleTreeTest {
+    static class Department implements LinkableDataType {
+        private final String id;
+        private final String parentId;
+        private final String name;
+
+        Department(String id, String parentId, String name) {
+            this.id = id;
+            this.parentId = parentId;
+            this.name = name;
+        }
+
+        @Override
+        public String id() {
+            return id;
+        }
+
+        @Override
+        public String parentId() {
+            return parentId;
+        }
+
+        /**
+         * the id is hashed as the key and the parent is left out, so moving a department does not change its content
+         */
+        static long contentHash(Department department) {
+            return MerkleTree.hash(department.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id, name);
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof Department)) {
+                return false;
+            }
+            Department department = (Department) object;
+            return id.equals(department.id) && name.equals(department.name);
+        }
+    }
+
+    @Test
+    public void test() {
+        List<Department> oldList = ImmutableList.of(
+                new Department("root", "", "root"),
+                new Department("eu", "root", "europe"),
+                new Department("de", "eu", "germany"),
+                new Department("fr", "eu", "france"),
+                new Department("us", "root", "america"),
+                new Department("ny", "us", "new york"));
+        List<Department> newList = ImmutableList.of(
+                new Department("root", "", "root"),
+                new Department("eu", "root", "europe"),
+                new Department("de", "eu", "deutschland"),
+                new Department("us", "root", "america"),
+                new Department("ny", "eu", "new york"),
+                new Department("ca", "us", "california"));
+        MerkleTree<Department> oldTree = MerkleTree.of(TreeConstructor.build(oldList), Department::contentHash, 1);
+        MerkleTree<Department> newTree = MerkleTree.of(TreeConstructor.build(newList), Department::contentHash, 1);
+        Assert.assertEquals(
+                ImmutableList.of("REMOVED(fr)", "CHANGED(de)", "MOVED(ny)", "ADDED(ca)"),
+                changes(oldTree.diff(newTree)));
+        Assert.assertEquals(ImmutableList.of(), oldTree.diff(oldTree));
+        MerkleTree.Change<Department> change = oldTree.diff(newTree).get(1);
+        Assert.assertEquals("germany", change.oldData().name);
+        Assert.assertEquals("deutschland", change.newData().name);
+    }
+
+    @Test
+    public void testRandom() {
+        Random random = new Random(0);
+        List<Department> oldList = TreeConstructorTest.randomForest(20000, random).stream()
+                .map(data -> new Department(data.id(), data.parentId(), "name-" + data.id()))
+                .collect(Collectors.toList());
+        // parents are always numbered before their children, which keeps the random moves free of cycles
+        List<Department> newList = new ArrayList<>(oldList);
+        Set<Integer> removedSet = new HashSet<>();
+        for (int count = 0; count < 20; count++) {
+            removedSet.add(1 + random.nextInt(oldList.size() - 1));
+        }
+        for (int count = 0; count < 50; count++) {
+            int index = 1 + random.nextInt(oldList.size() - 1);
+            Department department = newList.get(index);
+            newList.set(index, random.nextBoolean()
+                    ? new Department(department.id, department.parentId, department.name + "'")
+                    : new Department(department.id, String.valueOf(random.nextInt(index)), department.name));
+        }
+        for (int count = 0; count < 20; count++) {
+            newList.add(new Department(
+                    "new-" + count, String.valueOf(random.nextInt(oldList.size())), "name-new-" + count));
+        }
+        for (int index = newList.size() - 1; index >= 0; index--) {
+            if (removedSet.contains(index)) {
+                newList.remove(index);
+            }
+        }
+
+        MerkleTree<Department> oldTree = MerkleTree.of(TreeConstructor.build(oldList), Department::contentHash, 4);
+        MerkleTree<Department> newTree = MerkleTree.of(TreeConstructor.build(newList), Department::contentHash, 4);
+        List<String> changeList = changes(oldTree.diff(newTree));
+        Assert.assertEquals(naiveDiff(oldTree, newTree), new HashSet<>(changeList));
+        Assert.assertEquals(changeList.size(), new HashSet<>(changeList).size());
+        Assert.assertFalse(changeList.isEmpty());
+        // the hashes are the same no matter how many threads compute them
+        MerkleTree<Department> sequentialTree
+                = MerkleTree.of(TreeConstructor.build(newList), Department::contentHash, 1);
+        for (int index = 0; index < newTree.treeSnapshot().size(); index++) {
+            Assert.assertEquals(sequentialTree.subtreeHash(index), newTree.subtreeHash(index));
+        }
+    }
+
+    @Test
+    public void testSameHashCode() {
+        // "Aa" and "BB" share their String#hashCode
+        MerkleTree<Department> oldTree = MerkleTree.of(
+                TreeConstructor.build(ImmutableList.of(new Department("root", "", "Aa"))),
+                Department::contentHash,
+                1);
+        MerkleTree<Department> newTree = MerkleTree.of(
+                TreeConstructor.build(ImmutableList.of(new Department("root", "", "BB"))),
+                Department::contentHash,
+                1);
+        Assert.assertEquals(ImmutableList.of("CHANGED(root)"), changes(oldTree.diff(newTree)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateKey() {
+        MerkleTree.of(
+                TreeSnapshot.freeze(ImmutableList.of(new Node<>("a").addChild(new Node<>("a")))),
+                Function.<String>identity(),
+                MerkleTree::hash,
+                1);
+    }
+
+    private static List<String> changes(List<MerkleTree.Change<Department>> changeList) {
+        return changeList.stream().map(MerkleTree.Change::toString).collect(Collectors.toList());
+    }
+
+    private static Set<String> naiveDiff(MerkleTree<Department> oldTree, MerkleTree<Department> newTree) {
+        Map<String, Department> oldIdKeyed = departmentIdKeyed(oldTree.treeSnapshot());
+        Map<String, Department> newIdKeyed = departmentIdKeyed(newTree.treeSnapshot());
+        Map<String, String> oldParentIdKeyed = parentIdKeyed(oldTree.treeSnapshot());
+        Map<String, String> newParentIdKeyed = parentIdKeyed(newTree.treeSnapshot());
+        Set<String> changeSet = new HashSet<>();
+        newIdKeyed.forEach((id, department) -> {
+            if (!oldIdKeyed.containsKey(id)) {
+                changeSet.add(String.format("ADDED(%s)", id));
+                return;
+            }
+            if (!Objects.equals(oldParentIdKeyed.get(id), newParentIdKeyed.get(id))) {
+                changeSet.add(String.format("MOVED(%s)", id));
+            }
+            if (!oldIdKeyed.get(id).equals(department)) {
+                changeSet.add(String.format("CHANGED(%s)", id));
+            }
+        });
+        oldIdKeyed.keySet().stream()
+                .filter(id -> !newIdKeyed.containsKey(id))
+                .forEach(id -> changeSet.add(String.format("REMOVED(%s)", id)));
+        return changeSet;
+    }
+
+    private static Map<String, Department> departmentIdKeyed(TreeSnapshot<Department> treeSnapshot) {
+        Map<String, Department> departmentIdKeyed = new HashMap<>();
+        treeSnapshot.forEachPreOrder(index -> departmentIdKeyed.put(
+                treeSnapshot.data(index).id, treeSnapshot.data(index)));
+        return departmentIdKeyed;
+    }
+
+    /**
+     * parents in the built trees, which differ from the parent ids of the orphans
+     */
+    private static Map<String, String> parentIdKeyed(TreeSnapshot<Department> treeSnapshot) {
+        Map<String, String> parentIdKeyed = new HashMap<>();
+        treeSnapshot.forEachPreOrder(index -> parentIdKeyed.put(
+                treeSnapshot.data(index).id,
+                TreeSnapshot.NONE == treeSnapshot.parent(index)
+                        ? null
+                        : treeSnapshot.data(treeSnapshot.parent(index)).id));
+        return parentIdKeyed;
+    }
+}
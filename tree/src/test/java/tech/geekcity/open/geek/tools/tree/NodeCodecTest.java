@@ -0,0 +1,89 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @author ben.wangz
+ */
+public class NodeCodecTest {
+    @Test
+    public void test() throws Exception {
+        List<Node<TreeConstructorTest.LinkableData>> rootList
+                = TreeConstructor.build(TreeConstructorTest.randomForest(100000, new Random(0)));
+        byte[] bytes = serialize(new NodeCodec.TreeList<>(rootList));
+        NodeCodec.TreeList<TreeConstructorTest.LinkableData> treeList = deserialize(bytes);
+        Assert.assertEquals(TreeConstructorTest.ordered(rootList), TreeConstructorTest.ordered(treeList.rootList()));
+        for (Node<TreeConstructorTest.LinkableData> root : treeList.rootList()) {
+            Assert.assertTrue(root.root());
+            root.stream().forEach(node -> node.children().forEach(child -> Assert.assertSame(node, child.parent())));
+        }
+        // more compact than the default serialization
+        Assert.assertTrue(bytes.length < serialize((Serializable) rootList).length);
+    }
+
+    @Test
+    public void testDeepChain() throws Exception {
+        Node<Integer> root = new Node<>(0);
+        Node<Integer> leaf = root;
+        for (int index = 1; index < 1000000; index++) {
+            Node<Integer> node = new Node<>(index);
+            leaf.addChild(node);
+            leaf = node;
+        }
+        NodeCodec.TreeList<Integer> treeList = deserialize(serialize(new NodeCodec.TreeList<>(Collections.singletonList(root))));
+        Assert.assertEquals(1, treeList.rootList().size());
+        Node<Integer> current = treeList.rootList().get(0);
+        for (int index = 0; index < 1000000; index++) {
+            Assert.assertEquals(Integer.valueOf(index), current.data());
+            current = current.children().isEmpty() ? null : current.children().get(0);
+        }
+        Assert.assertNull(current);
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        NodeCodec.TreeList<Integer> treeList = deserialize(serialize(new NodeCodec.TreeList<>(ImmutableList.of())));
+        Assert.assertTrue(treeList.rootList().isEmpty());
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void testUnknownHeader() throws Exception {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream)) {
+            objectOutputStream.writeInt(0);
+            objectOutputStream.writeByte(1);
+        }
+        try (ObjectInputStream objectInputStream
+                     = new ObjectInputStream(new ByteArrayInputStream(byteArrayOutputStream.toByteArray()))) {
+            NodeCodec.read(objectInputStream);
+        }
+    }
+
+    private static byte[] serialize(Serializable object) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream)) {
+            objectOutputStream.writeObject(object);
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (T) objectInputStream.readObject();
+        }
+    }
+}
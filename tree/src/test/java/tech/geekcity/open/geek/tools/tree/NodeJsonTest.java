@@ -0,0 +1,143 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * @author ben.wangz
+ */
+public class NodeJsonTest {
+    private ObjectMapper objectMapper;
+
+    public static class Department implements Serializable {
+        private String name;
+        private long cost;
+
+        public Department() {
+        }
+
+        public Department(String name, long cost) {
+            this.name = name;
+            this.cost = cost;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public long getCost() {
+            return cost;
+        }
+
+        public void setCost(long cost) {
+            this.cost = cost;
+        }
+    }
+
+    public static class Organization {
+        private Node<Department> tree;
+
+        public Node<Department> getTree() {
+            return tree;
+        }
+
+        public void setTree(Node<Department> tree) {
+            this.tree = tree;
+        }
+    }
+
+    @Before
+    public void before() throws Exception {
+        objectMapper = new ObjectMapper().registerModule(new NodeJsonModule());
+    }
+
+    @Test
+    public void test() throws Exception {
+        Node<String> root = new Node<>("a")
+                .addChild(new Node<>("b").addChild(new Node<>("c")))
+                .addChild(new Node<>("d"));
+        String json = objectMapper.writeValueAsString(root);
+        Assert.assertEquals(
+                "{\"data\":\"a\",\"children\":[{\"data\":\"b\",\"children\":[{\"data\":\"c\",\"children\":[]}]},"
+                        + "{\"data\":\"d\",\"children\":[]}]}",
+                json);
+        Node<String> node = objectMapper.readValue(json, new TypeReference<Node<String>>() {
+        });
+        Assert.assertEquals(json, objectMapper.writeValueAsString(node));
+        Assert.assertSame(node, node.children().get(0).parent());
+
+        // fields in any order
+        Node<String> reordered = objectMapper.readValue(
+                "{\"children\":[{\"children\":[],\"data\":\"y\"}],\"data\":\"x\"}",
+                new TypeReference<Node<String>>() {
+                });
+        Assert.assertEquals("x", reordered.data());
+        Assert.assertEquals("y", reordered.children().get(0).data());
+    }
+
+    @Test
+    public void testData() throws Exception {
+        Organization organization = new Organization();
+        organization.setTree(new Node<>(new Department("root", 1))
+                .addChild(new Node<>(new Department("rd", 2)))
+                .addChild(new Node<>(new Department("sales", 3))));
+        Organization read = objectMapper.readValue(objectMapper.writeValueAsString(organization), Organization.class);
+        Assert.assertEquals("sales", read.getTree().children().get(1).data().getName());
+        Assert.assertEquals(3, read.getTree().children().get(1).data().getCost());
+
+        // untyped data
+        Node<?> untyped = objectMapper.readValue(objectMapper.writeValueAsString(organization.getTree()), Node.class);
+        Assert.assertEquals("rd", ((Map<?, ?>) untyped.children().get(0).data()).get("name"));
+    }
+
+    @Test
+    public void testForest() throws Exception {
+        Random random = new Random(0);
+        List<Node<Integer>> nodeList = new ArrayList<>();
+        List<Node<Integer>> rootList = new ArrayList<>();
+        for (int index = 0; index < 100000; index++) {
+            Node<Integer> node = new Node<>(index);
+            if (index % 10000 == 0) {
+                rootList.add(node);
+            } else if (index % 10000 < 400) {
+                // deep
+                nodeList.get(index - 1).addChild(node);
+            } else {
+                // wide
+                nodeList.get(index - index % 10000 + random.nextInt(400)).addChild(node);
+            }
+            nodeList.add(node);
+        }
+        String json = objectMapper.writeValueAsString(rootList);
+        List<Node<Integer>> read = objectMapper.readValue(json, new TypeReference<List<Node<Integer>>>() {
+        });
+        Assert.assertEquals(json, objectMapper.writeValueAsString(read));
+        Assert.assertEquals(Integer.valueOf(0), read.get(0).data());
+    }
+
+    @Test(expected = JsonMappingException.class)
+    public void testMalformed() throws Exception {
+        objectMapper.readValue("{\"data\":\"a\",\"children\":[1]}", new TypeReference<Node<String>>() {
+        });
+    }
+
+    @Test(expected = JsonMappingException.class)
+    public void testUnknownField() throws Exception {
+        objectMapper.readValue("{\"data\":\"a\",\"unknown\":{},\"children\":[]}", new TypeReference<Node<String>>() {
+        });
+    }
+}
@@ -7,8 +7,12 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
+import java.util.Random;
 import java.util.Spliterator;
 import java.util.Spliterators;
 import java.util.stream.Collectors;
@@ -84,4 +88,130 @@ public class NodeTest {
                                             parentNodeDataList.get(index + 1))));
                 });
     }
+
+    @Test
+    public void testIterator() {
+        Assert.assertEquals(ImmutableList.of("h", "d", "a", "b", "c", "e", "g", "f"), dataList(root.preOrderIterator()));
+        Assert.assertEquals(ImmutableList.of("a", "b", "c", "d", "e", "f", "g", "h"), dataList(root.postOrderIterator()));
+        Assert.assertEquals(ImmutableList.of("h", "d", "e", "g", "a", "b", "c", "f"), dataList(root.levelOrderIterator()));
+        Assert.assertEquals(
+                ImmutableList.of("h", "d", "a", "b", "c", "e", "g", "f"),
+                root.stream().map(Node::data).collect(Collectors.toList()));
+        Assert.assertEquals(
+                ImmutableList.of("h", "d", "a", "b", "c", "e", "g", "f"),
+                root.parallelStream().map(Node::data).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testDeepChain() {
+        int depth = 100000;
+        Node<Integer> chainRoot = new Node<>(0);
+        Node<Integer> current = chainRoot;
+        for (int index = 1; index < depth; index++) {
+            Node<Integer> child = new Node<>(index);
+            current.addChild(child);
+            current = child;
+        }
+        Assert.assertEquals(depth, dataList(chainRoot.preOrderIterator()).size());
+        Assert.assertEquals(depth - 1, (int) dataList(chainRoot.postOrderIterator()).get(0));
+        Assert.assertEquals(depth, dataList(chainRoot.levelOrderIterator()).size());
+        Assert.assertEquals(depth, chainRoot.parallelStream().count());
+        // a wide tree under the chain
+        Node<Integer> chainEnd = current;
+        IntStream.range(1, 1000).forEach(index -> chainEnd.addChild(new Node<>(-index)));
+        Assert.assertEquals(
+                dataList(chainRoot.preOrderIterator()),
+                chainRoot.parallelStream().map(Node::data).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testParallelStream() {
+        Random random = new Random(0);
+        List<Node<Integer>> nodeList = new ArrayList<>();
+        nodeList.add(new Node<>(0));
+        for (int index = 1; index < 100000; index++) {
+            Node<Integer> node = new Node<>(index);
+            nodeList.get(random.nextInt(index)).addChild(node);
+            nodeList.add(node);
+        }
+        Node<Integer> randomRoot = nodeList.get(0);
+        Assert.assertEquals(
+                dataList(randomRoot.preOrderIterator()),
+                randomRoot.parallelStream().map(Node::data).collect(Collectors.toList()));
+        Assert.assertEquals(
+                nodeList.stream().mapToLong(Node::data).sum(),
+                randomRoot.parallelStream().mapToLong(Node::data).sum());
+    }
+
+    @Test
+    public void testChildren() {
+        Node<String> parent = new Node<>("p");
+        List<Node<String>> children = parent.children();
+        Assert.assertTrue(children.isEmpty());
+        List<Node<String>> childList = IntStream.range(0, 5)
+                .mapToObj(index -> new Node<>(String.valueOf(index)))
+                .collect(Collectors.toList());
+        childList.forEach(parent::addChild);
+        // the view reflects the children added after it is taken
+        Assert.assertEquals(childList, children);
+        Assert.assertEquals(5, parent.childCount());
+        for (int index = 0; index < parent.childCount(); index++) {
+            Assert.assertSame(childList.get(index), parent.child(index));
+        }
+        parent.removeChild(childList.get(2));
+        Assert.assertSame(childList.get(3), parent.child(2));
+        Assert.assertEquals(ImmutableList.of("0", "1", "3", "4"),
+                children.stream().map(Node::data).collect(Collectors.toList()));
+        Assert.assertTrue(childList.get(2).root());
+        ImmutableList.of(0, 1, 3, 4).forEach(index -> parent.removeChild(childList.get(index)));
+        Assert.assertTrue(children.isEmpty());
+        Assert.assertEquals(ImmutableList.of("p"), dataList(parent.postOrderIterator()));
+        try {
+            children.get(0);
+            Assert.fail("children should be empty");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+        Assert.assertEquals(0, parent.childCount());
+        try {
+            parent.child(0);
+            Assert.fail("there should be no child");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testModifyChildren() {
+        Node<String> parent = new Node<>("p");
+        List<Node<String>> children = parent.children();
+        Node<String> a = new Node<>("a");
+        Node<String> b = new Node<>("b");
+        Node<String> c = new Node<>("c");
+        Node<String> d = new Node<>("d");
+        children.add(a);
+        children.add(c);
+        children.add(1, b);
+        children.add(0, d);
+        Assert.assertEquals(ImmutableList.of("p", "d", "a", "b", "c"), dataList(parent.preOrderIterator()));
+        children.forEach(child -> Assert.assertSame(parent, child.parent()));
+        Assert.assertSame(d, children.remove(0));
+        Assert.assertTrue(d.root());
+        Assert.assertTrue(children.remove(b));
+        Assert.assertTrue(b.root());
+        Assert.assertSame(c, children.set(1, d));
+        Assert.assertTrue(c.root());
+        Assert.assertSame(parent, d.parent());
+        Assert.assertEquals(ImmutableList.of("p", "a", "d"), dataList(parent.preOrderIterator()));
+        children.clear();
+        Assert.assertEquals(0, parent.childCount());
+        Assert.assertTrue(a.root());
+        Assert.assertTrue(d.root());
+    }
+
+    private static <DataType extends Serializable> List<DataType> dataList(Iterator<Node<DataType>> iterator) {
+        List<DataType> dataList = new ArrayList<>();
+        iterator.forEachRemaining(node -> dataList.add(node.data()));
+        return dataList;
+    }
 }
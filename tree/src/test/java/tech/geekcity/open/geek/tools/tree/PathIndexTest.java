@@ -0,0 +1,86 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * @author ben.wangz
+ */
+public class PathIndexTest {
+    @Test
+    public void test() {
+        // labels are the names, and the same name shows up under different parents
+        List<Node<String>> rootList = ImmutableList.of(
+                new Node<>("root")
+                        .addChild(new Node<>("eu")
+                                .addChild(new Node<>("de")
+                                        .addChild(new Node<>("berlin"))
+                                        .addChild(new Node<>("munich")))
+                                .addChild(new Node<>("fr")
+                                        .addChild(new Node<>("paris"))))
+                        .addChild(new Node<>("us")
+                                .addChild(new Node<>("de"))),
+                new Node<>("other"));
+        PathIndex<String> pathIndex = PathIndex.of(rootList, Function.identity());
+        TreeSnapshot<String> treeSnapshot = pathIndex.treeSnapshot();
+
+        int berlin = pathIndex.find("root/eu/de/berlin", "/");
+        Assert.assertEquals("berlin", treeSnapshot.data(berlin));
+        Assert.assertEquals(ImmutableList.of("root", "eu", "de", "berlin"), pathIndex.path(berlin));
+        Assert.assertEquals("de", pathIndex.data(ImmutableList.of("root", "us", "de")));
+        Assert.assertEquals("other", pathIndex.data(ImmutableList.of("other")));
+        Assert.assertEquals(PathIndex.NONE, pathIndex.find("root/eu/it", "/"));
+        Assert.assertEquals(PathIndex.NONE, pathIndex.find("root/eu/de/berlin/mitte", "/"));
+        Assert.assertEquals(PathIndex.NONE, pathIndex.find("root//eu", "/"));
+        Assert.assertEquals(PathIndex.NONE, pathIndex.find(ImmutableList.of()));
+        Assert.assertNull(pathIndex.data(ImmutableList.of("eu")));
+
+        Assert.assertEquals(
+                ImmutableList.of("eu", "de", "berlin", "munich", "fr", "paris"),
+                pathIndex.subtree(ImmutableList.of("root", "eu")));
+        Assert.assertEquals(
+                ImmutableList.of("berlin", "munich"),
+                pathIndex.descendants(pathIndex.find("root::eu::de", "::")));
+        Assert.assertEquals(ImmutableList.of(), pathIndex.subtree(ImmutableList.of("root", "asia")));
+        Assert.assertEquals(ImmutableList.of(), pathIndex.descendants(berlin));
+    }
+
+    @Test
+    public void testById() {
+        List<TreeConstructorTest.LinkableData> dataList = TreeConstructorTest.randomForest(10000, new Random(0));
+        List<Node<TreeConstructorTest.LinkableData>> rootList = TreeConstructor.build(dataList);
+        PathIndex<TreeConstructorTest.LinkableData> pathIndex = PathIndex.byId(TreeSnapshot.freeze(rootList));
+        for (Node<TreeConstructorTest.LinkableData> root : rootList) {
+            for (Iterator<Node<TreeConstructorTest.LinkableData>> iterator = root.preOrderIterator();
+                 iterator.hasNext(); ) {
+                Node<TreeConstructorTest.LinkableData> node = iterator.next();
+                List<String> idPath = new ArrayList<>();
+                idPath.add(node.data().id());
+                for (Iterator<Node<TreeConstructorTest.LinkableData>> parentIterator = node.parentNodeIterator();
+                     parentIterator.hasNext(); ) {
+                    idPath.add(0, parentIterator.next().data().id());
+                }
+                int index = pathIndex.find(idPath);
+                Assert.assertSame(node.data(), pathIndex.treeSnapshot().data(index));
+                Assert.assertEquals(idPath, pathIndex.path(index));
+                List<TreeConstructorTest.LinkableData> subtree = new ArrayList<>();
+                node.preOrderIterator().forEachRemaining(descendant -> subtree.add(descendant.data()));
+                Assert.assertEquals(subtree, pathIndex.subtree(idPath));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateLabel() {
+        PathIndex.of(
+                ImmutableList.of(new Node<>("a").addChild(new Node<>("b")).addChild(new Node<>("b"))),
+                Function.<String>identity());
+    }
+}
@@ -0,0 +1,125 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @author ben.wangz
+ */
+public class StreamingTreeBuilderTest {
+    private List<Node<TreeConstructorTest.LinkableData>> treeList;
+    private List<Node<TreeConstructorTest.LinkableData>> evictedList;
+    private StreamingTreeBuilder<TreeConstructorTest.LinkableData> streamingTreeBuilder;
+
+    @Before
+    public void before() throws Exception {
+        treeList = new ArrayList<>();
+        evictedList = new ArrayList<>();
+        streamingTreeBuilder = new StreamingTreeBuilder<>(3, treeList::add, evictedList::add);
+    }
+
+    @Test
+    public void test() {
+        // children come before their parents
+        add("c", "b", 1);
+        add("d", "b", 2);
+        Assert.assertEquals(2, streamingTreeBuilder.pendingSize());
+        add("b", "a", 3);
+        Assert.assertEquals(3, streamingTreeBuilder.pendingSize());
+        add("a", "", 4);
+        Assert.assertEquals(0, streamingTreeBuilder.pendingSize());
+        add("x", "", 5);
+        add("e", "a", 6);
+        Assert.assertEquals(2, streamingTreeBuilder.openTreeCount());
+        Assert.assertTrue(treeList.isEmpty());
+
+        Assert.assertTrue(streamingTreeBuilder.seal("a"));
+        Assert.assertEquals(ImmutableList.of("a[b[c[], d[]], e[]]"), TreeConstructorTest.canonical(treeList));
+        Assert.assertEquals(1, streamingTreeBuilder.size());
+        Assert.assertFalse(streamingTreeBuilder.seal("a"));
+        Assert.assertFalse(streamingTreeBuilder.seal("missing"));
+        // a late child of a sealed tree waits for a parent that never comes
+        add("f", "a", 7);
+        Assert.assertEquals(1, streamingTreeBuilder.pendingSize());
+        streamingTreeBuilder.flush();
+        Assert.assertEquals(
+                ImmutableList.of("a[b[c[], d[]], e[]]", "f[]", "x[]"),
+                TreeConstructorTest.canonical(treeList));
+        Assert.assertEquals(0, streamingTreeBuilder.size());
+        Assert.assertTrue(evictedList.isEmpty());
+    }
+
+    @Test
+    public void testWatermark() {
+        add("a", "", 1);
+        add("b", "", 2);
+        add("c", "b", 5);
+        add("d", "", 3);
+        streamingTreeBuilder.advanceWatermark(3);
+        Assert.assertEquals(ImmutableList.of("a[]", "d[]"), TreeConstructorTest.canonical(treeList));
+        Assert.assertEquals(1, streamingTreeBuilder.openTreeCount());
+        // not after the current watermark
+        streamingTreeBuilder.advanceWatermark(2);
+        Assert.assertEquals(3, streamingTreeBuilder.watermark());
+        streamingTreeBuilder.advanceWatermark(5);
+        Assert.assertEquals(ImmutableList.of("a[]", "b[c[]]", "d[]"), TreeConstructorTest.canonical(treeList));
+        Assert.assertEquals(0, streamingTreeBuilder.size());
+    }
+
+    @Test
+    public void testEviction() {
+        add("c", "b", 1);
+        add("e", "d", 2);
+        add("f", "e", 3);
+        Assert.assertEquals(3, streamingTreeBuilder.pendingSize());
+        // the oldest waiting subtree goes first
+        add("g", "h", 4);
+        Assert.assertEquals(ImmutableList.of("c[]"), TreeConstructorTest.canonical(evictedList));
+        add("i", "j", 5);
+        Assert.assertEquals(ImmutableList.of("c[]", "e[f[]]"), TreeConstructorTest.canonical(evictedList));
+        Assert.assertEquals(2, streamingTreeBuilder.pendingSize());
+        Assert.assertEquals(2, streamingTreeBuilder.size());
+        // the parent of the evicted subtree comes too late
+        add("b", "", 6);
+        streamingTreeBuilder.flush();
+        Assert.assertEquals(ImmutableList.of("b[]", "g[]", "i[]"), TreeConstructorTest.canonical(treeList));
+    }
+
+    @Test
+    public void testRandom() {
+        List<TreeConstructorTest.LinkableData> dataList = TreeConstructorTest.randomForest(10000, new Random(0));
+        StreamingTreeBuilder<TreeConstructorTest.LinkableData> unboundedBuilder
+                = new StreamingTreeBuilder<>(Integer.MAX_VALUE, treeList::add, evictedList::add);
+        for (int index = 0; index < dataList.size(); index++) {
+            unboundedBuilder.add(dataList.get(index), index);
+        }
+        Assert.assertEquals(dataList.size(), unboundedBuilder.size());
+        unboundedBuilder.flush();
+        Assert.assertEquals(
+                TreeConstructorTest.canonical(TreeConstructor.build(dataList)),
+                TreeConstructorTest.canonical(treeList));
+        Assert.assertTrue(evictedList.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCycle() {
+        add("a", "b", 1);
+        add("b", "a", 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateId() {
+        add("a", "", 1);
+        add("a", "", 2);
+    }
+
+    private void add(String id, String parentId, long timestamp) {
+        streamingTreeBuilder.add(new TreeConstructorTest.LinkableData(id, parentId), timestamp);
+    }
+}
@@ -0,0 +1,100 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * @author ben.wangz
+ */
+public class SubtreeAggregatorTest {
+    @Test
+    public void test() {
+        TreeSnapshot<TreeConstructorTest.LinkableData> treeSnapshot = TreeSnapshot.freeze(
+                TreeConstructor.build(TreeConstructorTest.randomForest(50000, new Random(0))));
+        long[] sizeArray = SubtreeAggregator.aggregateLong(treeSnapshot, data -> 1L, Long::sum);
+        for (int index = 0; index < treeSnapshot.size(); index++) {
+            Assert.assertEquals(treeSnapshot.subtreeSize(index), sizeArray[index]);
+        }
+        Assert.assertArrayEquals(sizeArray, SubtreeAggregator.aggregateLong(treeSnapshot, data -> 1L, Long::sum, 4));
+
+        double[] maxDepthArray = SubtreeAggregator.aggregateDouble(
+                treeSnapshot, data -> 0.0, (left, right) -> Math.max(left, right + 1), 4);
+        for (int index = 0; index < treeSnapshot.size(); index++) {
+            int maxDepth = 0;
+            for (int descendant = index; descendant < treeSnapshot.subtreeEnd(index); descendant++) {
+                maxDepth = Math.max(maxDepth, treeSnapshot.depth(descendant) - treeSnapshot.depth(index));
+            }
+            Assert.assertEquals(maxDepth, maxDepthArray[index], 0.0);
+        }
+    }
+
+    @Test
+    public void testChildOrder() {
+        List<Node<Integer>> rootList = new ArrayList<>();
+        Random random = new Random(0);
+        List<Node<Integer>> nodeList = new ArrayList<>();
+        for (int index = 0; index < 100000; index++) {
+            Node<Integer> node = new Node<>(random.nextInt(10));
+            if (index % 10000 == 0) {
+                rootList.add(node);
+            } else {
+                nodeList.get(random.nextInt(index)).addChild(node);
+            }
+            nodeList.add(node);
+        }
+        TreeSnapshot<Integer> treeSnapshot = TreeSnapshot.freeze(rootList);
+        // the digits of the subtree in pre-order, not associative but it tells the folding order
+        long[] digestArray = SubtreeAggregator.aggregateLong(
+                treeSnapshot, Integer::longValue, (left, right) -> left * 31 + right, 3);
+        Assert.assertArrayEquals(
+                SubtreeAggregator.aggregateLong(treeSnapshot, Integer::longValue, (left, right) -> left * 31 + right),
+                digestArray);
+        Assert.assertEquals(digest(rootList.get(3)), digestArray[treeSnapshot.root(3)]);
+    }
+
+    @Test
+    public void testDeepChain() {
+        Node<Integer> root = new Node<>(0);
+        Node<Integer> leaf = root;
+        for (int index = 1; index < 200000; index++) {
+            Node<Integer> node = new Node<>(index);
+            leaf.addChild(node);
+            leaf = node;
+        }
+        TreeSnapshot<Integer> treeSnapshot = TreeSnapshot.freeze(Collections.singletonList(root));
+        long[] sumArray = SubtreeAggregator.aggregateLong(treeSnapshot, Integer::longValue, Long::sum, 4);
+        Assert.assertEquals(199999L * 200000 / 2, sumArray[0]);
+        Assert.assertEquals(199999L, sumArray[199999]);
+    }
+
+    private static long digest(Node<Integer> root) {
+        // post-order without recursion
+        Deque<Node<Integer>> stack = new ArrayDeque<>();
+        List<Node<Integer>> postOrder = new ArrayList<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node<Integer> node = stack.pop();
+            postOrder.add(node);
+            node.children().forEach(stack::push);
+        }
+        Map<Node<Integer>, Long> digestOf = new IdentityHashMap<>();
+        Collections.reverse(postOrder);
+        for (Node<Integer> node : postOrder) {
+            long digest = node.data();
+            for (Node<Integer> child : node.children()) {
+                digest = digest * 31 + digestOf.get(child);
+            }
+            digestOf.put(node, digest);
+        }
+        return digestOf.get(root);
+    }
+}
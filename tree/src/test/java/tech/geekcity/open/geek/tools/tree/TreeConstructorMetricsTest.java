@@ -0,0 +1,187 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * @author ben.wangz
+ */
+public class TreeConstructorMetricsTest {
+    static class SerializableNodeComparator
+            implements TreeConstructor.NodeComparator<TreeConstructorTest.LinkableData>, Serializable {
+        @Override
+        public boolean isParent(
+                Node<TreeConstructorTest.LinkableData> parent,
+                Node<TreeConstructorTest.LinkableData> child) {
+            return child.data().parentId().equals(parent.data().id());
+        }
+
+        @Override
+        public boolean equals(
+                Node<TreeConstructorTest.LinkableData> node,
+                Node<TreeConstructorTest.LinkableData> anotherNode) {
+            return node.data().id().equals(anotherNode.data().id());
+        }
+    }
+
+    @Test
+    public void test() {
+        TreeConstructorMetrics metrics = new TreeConstructorMetrics();
+        TreeConstructor<TreeConstructorTest.LinkableData> treeConstructor
+                = new TreeConstructor<>(LinkableDataType.nodeComparator(), metrics);
+        // a -> {b -> {c, d}, e}, with c and d added before b, and e added twice
+        TreeConstructorTest.LinkableData e = new TreeConstructorTest.LinkableData("e", "a");
+        ImmutableList.of(
+                new TreeConstructorTest.LinkableData("a", ""),
+                new TreeConstructorTest.LinkableData("c", "b"),
+                new TreeConstructorTest.LinkableData("d", "b"),
+                new TreeConstructorTest.LinkableData("b", "a"),
+                e,
+                e)
+                .forEach(data -> treeConstructor.add(new Node<>(data)));
+        treeConstructor.add(new Node<>(new TreeConstructorTest.LinkableData("f", "a")), false);
+        treeConstructor.treeList();
+        treeConstructor.move("b", "e");
+
+        TreeConstructorMetrics.Snapshot snapshot = metrics.snapshot();
+        Assert.assertEquals(5, snapshot.optimizedAddCount());
+        Assert.assertEquals(1, snapshot.fallbackAddCount());
+        Assert.assertEquals(1, snapshot.omittedAddCount());
+        // b merges the locations of a, c and d
+        Assert.assertEquals(2, snapshot.mergeCount());
+        // b, c and d
+        Assert.assertEquals(3, snapshot.relocatedNodeCount());
+        Assert.assertEquals(2, snapshot.maxParentListSize());
+        // the fallback add compares with the 5 nodes added before, then links to its parent
+        Assert.assertEquals(6, snapshot.relationShipCount());
+        // the default relationShip is computed by isParent, whose calls are counted
+        Assert.assertTrue(snapshot.isParentCount() > 0);
+        Assert.assertEquals(18, snapshot.isParentCount());
+        Assert.assertEquals(5, snapshot.linkKeyIndexSize());
+        // "", "a", "b" and "e", which b is moved under
+        Assert.assertEquals(4, snapshot.parentLinkKeyIndexSize());
+        Assert.assertEquals(1, snapshot.notLinkableNodeCount());
+        Assert.assertEquals(1, snapshot.rootCount());
+        Assert.assertEquals(7, snapshot.addLatency().count());
+        Assert.assertEquals(1, snapshot.treeListLatency().count());
+        Assert.assertTrue(snapshot.addLatency().totalNanos() > 0);
+        Assert.assertTrue(snapshot.addLatency().quantileUpperBound(1) > 0);
+        Assert.assertNotNull(snapshot.toString());
+    }
+
+    @Test
+    public void testRemoveRoot() {
+        TreeConstructorMetrics metrics = new TreeConstructorMetrics();
+        TreeConstructor<TreeConstructorTest.LinkableData> treeConstructor
+                = new TreeConstructor<>(LinkableDataType.nodeComparator(), metrics);
+        // root -> {a -> 0 -> 1 -> ... -> 99, b}
+        treeConstructor.add(new Node<>(new TreeConstructorTest.LinkableData("root", "")));
+        treeConstructor.add(new Node<>(new TreeConstructorTest.LinkableData("a", "root")));
+        treeConstructor.add(new Node<>(new TreeConstructorTest.LinkableData("b", "root")));
+        for (int index = 0; index < 100; index++) {
+            treeConstructor.add(new Node<>(new TreeConstructorTest.LinkableData(
+                    String.valueOf(index), 0 == index ? "a" : String.valueOf(index - 1))));
+        }
+        long relocatedNodeCount = metrics.snapshot().relocatedNodeCount();
+        treeConstructor.remove("root");
+        // only b is moved, the subtree of a keeps the location of the removed root
+        Assert.assertEquals(1, metrics.snapshot().relocatedNodeCount() - relocatedNodeCount);
+        treeConstructor.add(new Node<>(new TreeConstructorTest.LinkableData("100", "99")));
+        treeConstructor.add(new Node<>(new TreeConstructorTest.LinkableData("c", "b")));
+        List<Node<TreeConstructorTest.LinkableData>> treeList = treeConstructor.treeList();
+        // a with 0 to 100, and b with c
+        Assert.assertEquals(
+                ImmutableList.of(102L, 2L),
+                treeList.stream()
+                        .map(root -> root.stream().count())
+                        .sorted(Comparator.reverseOrder())
+                        .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testComparatorCount() {
+        TreeConstructorMetrics metrics = new TreeConstructorMetrics();
+        TreeConstructor<TreeConstructorTest.LinkableData> treeConstructor
+                = new TreeConstructor<>(new TreeConstructor.NodeComparator<TreeConstructorTest.LinkableData>() {
+            @Override
+            public boolean isParent(
+                    Node<TreeConstructorTest.LinkableData> parent,
+                    Node<TreeConstructorTest.LinkableData> child) {
+                return child.data().parentId().equals(parent.data().id());
+            }
+
+            @Override
+            public boolean equals(
+                    Node<TreeConstructorTest.LinkableData> node,
+                    Node<TreeConstructorTest.LinkableData> anotherNode) {
+                return node.data().id().equals(anotherNode.data().id());
+            }
+        }, metrics);
+        List<TreeConstructorTest.LinkableData> dataList = TreeConstructorTest.randomForest(100, new Random(0));
+        dataList.forEach(data -> treeConstructor.add(new Node<>(data), false));
+        TreeConstructorMetrics.Snapshot snapshot = metrics.snapshot();
+        List<Node<TreeConstructorTest.LinkableData>> treeList = treeConstructor.treeList();
+        Assert.assertEquals(
+                TreeConstructorTest.canonical(TreeConstructor.build(dataList)),
+                TreeConstructorTest.canonical(treeList));
+        // every node is compared with all the nodes added before, then with the ones to link again
+        int linkCount = dataList.size() - treeList.size();
+        Assert.assertEquals(100 * 99 / 2, snapshot.equalsCount());
+        Assert.assertEquals(100 * 99 / 2 + linkCount, snapshot.relationShipCount());
+        // the default relationShip calls isParent 3 times, which are counted as well
+        Assert.assertEquals(3 * snapshot.relationShipCount(), snapshot.isParentCount());
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        TreeConstructorMetrics metrics = new TreeConstructorMetrics();
+        TreeConstructor<TreeConstructorTest.LinkableData> treeConstructor
+                = new TreeConstructor<>(new SerializableNodeComparator(), metrics);
+        treeConstructor.add(new Node<>(new TreeConstructorTest.LinkableData("b", "a")));
+        treeConstructor.add(new Node<>(new TreeConstructorTest.LinkableData("c", "a")));
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream)) {
+            objectOutputStream.writeObject(treeConstructor);
+        }
+        TreeConstructor<TreeConstructorTest.LinkableData> copy;
+        try (ObjectInputStream objectInputStream
+                     = new ObjectInputStream(new ByteArrayInputStream(byteArrayOutputStream.toByteArray()))) {
+            @SuppressWarnings("unchecked")
+            TreeConstructor<TreeConstructorTest.LinkableData> read
+                    = (TreeConstructor<TreeConstructorTest.LinkableData>) objectInputStream.readObject();
+            copy = read;
+        }
+        copy.add(new Node<>(new TreeConstructorTest.LinkableData("a", "")));
+        Assert.assertEquals(ImmutableList.of("a[b[], c[]]"), TreeConstructorTest.canonical(copy.treeList()));
+        Assert.assertEquals(2, metrics.snapshot().maxParentListSize());
+    }
+
+    @Test
+    public void testQuantile() {
+        TreeConstructorMetrics metrics = new TreeConstructorMetrics();
+        TreeConstructor<TreeConstructorTest.LinkableData> treeConstructor
+                = new TreeConstructor<>(LinkableDataType.nodeComparator(), metrics);
+        for (int index = 0; index < 1000; index++) {
+            treeConstructor.treeList();
+        }
+        TreeConstructorMetrics.LatencySnapshot latency = metrics.snapshot().treeListLatency();
+        Assert.assertEquals(1000, latency.count());
+        Assert.assertTrue(latency.quantileUpperBound(0.5) <= latency.quantileUpperBound(0.99));
+        long sum = 0;
+        for (int bucket = 0; bucket < Long.SIZE; bucket++) {
+            sum += latency.bucketCount(bucket);
+        }
+        Assert.assertEquals(1000, sum);
+    }
+}
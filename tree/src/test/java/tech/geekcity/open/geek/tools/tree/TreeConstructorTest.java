@@ -1,20 +1,25 @@
 package tech.geekcity.open.geek.tools.tree;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.TreeTraverser;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.Random;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.StreamSupport;
 
 /**
  * @author ben.wangz
  */
 public class TreeConstructorTest {
-    private static class LinkableData implements LinkableDataType {
+    static class LinkableData implements LinkableDataType {
         private String id;
         private String parentId;
 
@@ -34,6 +39,20 @@ public class TreeConstructorTest {
         }
     }
 
+    /**
+     * overrides equals without hashCode
+     */
+    static class EqualByIdData extends LinkableData {
+        public EqualByIdData(String id, String parentId) {
+            super(id, parentId);
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            return object instanceof EqualByIdData && id().equals(((EqualByIdData) object).id());
+        }
+    }
+
     private Node<String> stringTreeRoot;
 
     @Before
@@ -194,4 +213,284 @@ public class TreeConstructorTest {
                         .sorted()
                         .collect(Collectors.toList()));
     }
+
+    @Test
+    public void testLinkKey() {
+        TreeConstructor.NodeComparator<Node<String>> nodeComparator
+                = new TreeConstructor.NodeComparator<Node<String>>() {
+            @Override
+            public boolean isParent(Node<Node<String>> parent, Node<Node<String>> child) {
+                return Objects.equals(parent.data(), child.data().parent());
+            }
+
+            @Override
+            public boolean equals(Node<Node<String>> node, Node<Node<String>> anotherNode) {
+                return Objects.equals(node.data().data(), anotherNode.data().data());
+            }
+
+            @Override
+            public Object linkKey(Node<Node<String>> node) {
+                return node.data();
+            }
+
+            @Override
+            public Object parentLinkKey(Node<Node<String>> node) {
+                return node.data().parent();
+            }
+        };
+        List<Node<String>> nodeList = StreamSupport.stream(
+                TreeTraverser.<Node<String>>using(Node::children)
+                        .postOrderTraversal(stringTreeRoot).spliterator(),
+                false)
+                .collect(Collectors.toList());
+        Collections.shuffle(nodeList, new Random(0));
+        TreeConstructor<Node<String>> treeConstructor = new TreeConstructor<>(nodeComparator);
+        TreeConstructor<Node<String>> notOptimizedTreeConstructor = new TreeConstructor<>(nodeComparator);
+        nodeList.forEach(node -> {
+            treeConstructor.add(new Node<>(node));
+            notOptimizedTreeConstructor.add(new Node<>(node), false);
+        });
+        Assert.assertEquals(1, treeConstructor.treeList().size());
+        Assert.assertEquals(1, notOptimizedTreeConstructor.treeList().size());
+        Assert.assertEquals(
+                StreamSupport.stream(
+                        TreeTraverser.<Node<String>>using(Node::children)
+                                .preOrderTraversal(stringTreeRoot).spliterator(),
+                        false)
+                        .map(Node::data)
+                        .sorted()
+                        .collect(Collectors.toList()),
+                StreamSupport.stream(
+                        TreeTraverser.<Node<Node<String>>>using(Node::children)
+                                .preOrderTraversal(treeConstructor.treeList().get(0)).spliterator(),
+                        false)
+                        .map(node -> node.data().data())
+                        .sorted()
+                        .collect(Collectors.toList()));
+        treeConstructor.treeList().get(0).children()
+                .forEach(child -> Assert.assertSame(
+                        child.data().parent(),
+                        child.parent().data()));
+    }
+
+    @Test
+    public void testOmitEqualNode() {
+        TreeConstructor<LinkableData> linkableDataTreeConstructor
+                = new TreeConstructor<>(LinkableDataType.nodeComparator());
+        LinkableData root = new LinkableData("root", "");
+        LinkableData child = new LinkableData("child", "root");
+        linkableDataTreeConstructor.add(new Node<>(root));
+        linkableDataTreeConstructor.add(new Node<>(child));
+        linkableDataTreeConstructor.add(new Node<>(child));
+        linkableDataTreeConstructor.add(new Node<>(root), false);
+        List<Node<LinkableData>> linkableTreeList = linkableDataTreeConstructor.treeList();
+        Assert.assertEquals(1, linkableTreeList.size());
+        Assert.assertEquals(1, linkableTreeList.get(0).children().size());
+        Assert.assertSame(child, linkableTreeList.get(0).children().get(0).data());
+    }
+
+    @Test
+    public void testOmitEqualDataWithoutHashCode() {
+        TreeConstructor<EqualByIdData> treeConstructor = new TreeConstructor<>(LinkableDataType.nodeComparator());
+        treeConstructor.add(new Node<>(new EqualByIdData("root", "")));
+        treeConstructor.add(new Node<>(new EqualByIdData("child", "root")));
+        // equal to the data added before, while the identity hash codes differ
+        treeConstructor.add(new Node<>(new EqualByIdData("child", "root")));
+        List<Node<EqualByIdData>> treeList = treeConstructor.treeList();
+        Assert.assertEquals(1, treeList.size());
+        Assert.assertEquals(1, treeList.get(0).childCount());
+    }
+
+    @Test
+    public void testBuild() {
+        List<LinkableData> dataList = randomForest(1000, new Random(0));
+        TreeConstructor<LinkableData> linkableDataTreeConstructor
+                = new TreeConstructor<>(LinkableDataType.nodeComparator());
+        dataList.forEach(data -> linkableDataTreeConstructor.add(new Node<>(data)));
+        List<LinkableData> duplicatedDataList = new ArrayList<>(dataList);
+        duplicatedDataList.addAll(dataList.subList(0, 10));
+        Assert.assertEquals(
+                canonical(linkableDataTreeConstructor.treeList()),
+                canonical(TreeConstructor.build(duplicatedDataList)));
+    }
+
+    @Test
+    public void testParallelBuild() {
+        List<LinkableData> dataList = randomForest(10000, new Random(1));
+        dataList.addAll(dataList.subList(0, 100));
+        List<String> expected = ordered(TreeConstructor.build(dataList));
+        IntStream.of(1, 2, 4, 8).forEach(parallelism ->
+                Assert.assertEquals(expected, ordered(TreeConstructor.build(dataList, parallelism))));
+    }
+
+    @Test
+    public void testRemoveAndMove() {
+        TreeConstructor<LinkableData> linkableDataTreeConstructor
+                = new TreeConstructor<>(LinkableDataType.nodeComparator());
+        // a -> {b -> {c, d}, e}
+        ImmutableList.of(
+                new LinkableData("c", "b"),
+                new LinkableData("a", ""),
+                new LinkableData("d", "b"),
+                new LinkableData("b", "a"),
+                new LinkableData("e", "a"))
+                .forEach(data -> linkableDataTreeConstructor.add(new Node<>(data)));
+        Assert.assertEquals(ImmutableList.of("a[b[c[], d[]], e[]]"), canonical(linkableDataTreeConstructor.treeList()));
+
+        Assert.assertTrue(linkableDataTreeConstructor.remove("b"));
+        Assert.assertFalse(linkableDataTreeConstructor.remove("b"));
+        Assert.assertEquals(
+                ImmutableList.of("a[e[]]", "c[]", "d[]"),
+                canonical(linkableDataTreeConstructor.treeList()));
+
+        Assert.assertTrue(linkableDataTreeConstructor.move("c", "e"));
+        Assert.assertTrue(linkableDataTreeConstructor.move("e", "d"));
+        Assert.assertEquals(
+                ImmutableList.of("a[]", "d[e[c[]]]"),
+                canonical(linkableDataTreeConstructor.treeList()));
+
+        // d is still waiting for b
+        linkableDataTreeConstructor.add(new Node<>(new LinkableData("b", "a")));
+        Assert.assertEquals(
+                ImmutableList.of("a[b[d[e[c[]]]]]"),
+                canonical(linkableDataTreeConstructor.treeList()));
+
+        Assert.assertTrue(linkableDataTreeConstructor.move("e", null));
+        Assert.assertTrue(linkableDataTreeConstructor.remove("a"));
+        Assert.assertEquals(
+                ImmutableList.of("b[d[]]", "e[c[]]"),
+                canonical(linkableDataTreeConstructor.treeList()));
+
+        // the moved node stays with its new parent link key
+        Assert.assertTrue(linkableDataTreeConstructor.move("e", "a"));
+        linkableDataTreeConstructor.add(new Node<>(new LinkableData("a", "")));
+        Assert.assertEquals(
+                ImmutableList.of("a[b[d[]], e[c[]]]"),
+                canonical(linkableDataTreeConstructor.treeList()));
+        Assert.assertFalse(linkableDataTreeConstructor.move("x", "a"));
+    }
+
+    @Test
+    public void testLocationCompaction() {
+        List<LinkableData> dataList = randomForest(1000, new Random(0));
+        TreeConstructor<LinkableData> linkableDataTreeConstructor
+                = new TreeConstructor<>(LinkableDataType.nodeComparator());
+        dataList.forEach(data -> linkableDataTreeConstructor.add(new Node<>(data)));
+        Random random = new Random(0);
+        for (int round = 0; round < 20000; round++) {
+            LinkableData data = dataList.get(random.nextInt(dataList.size()));
+            if (random.nextBoolean()) {
+                Assert.assertTrue(linkableDataTreeConstructor.move(data.id(), null));
+                Assert.assertTrue(linkableDataTreeConstructor.move(data.id(), data.parentId()));
+            } else {
+                Assert.assertTrue(linkableDataTreeConstructor.remove(data.id()));
+                linkableDataTreeConstructor.add(new Node<>(data));
+            }
+            // bounded by the nodes held, not by the edits made
+            Assert.assertTrue(linkableDataTreeConstructor.locationCount() <= 2 * dataList.size() + 1024);
+        }
+        Assert.assertEquals(
+                canonical(TreeConstructor.build(dataList)),
+                canonical(linkableDataTreeConstructor.treeList()));
+    }
+
+    @Test
+    public void testTreeListCache() {
+        TreeConstructor<LinkableData> linkableDataTreeConstructor
+                = new TreeConstructor<>(LinkableDataType.nodeComparator());
+        linkableDataTreeConstructor.add(new Node<>(new LinkableData("a", "")));
+        List<Node<LinkableData>> treeList = linkableDataTreeConstructor.treeList();
+        Assert.assertSame(treeList, linkableDataTreeConstructor.treeList());
+        linkableDataTreeConstructor.add(new Node<>(new LinkableData("b", "")));
+        Assert.assertNotSame(treeList, linkableDataTreeConstructor.treeList());
+        Assert.assertEquals(2, linkableDataTreeConstructor.treeList().size());
+        try {
+            linkableDataTreeConstructor.treeList().clear();
+            Assert.fail("treeList should be unmodifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testCycle() {
+        TreeConstructor<LinkableData> linkableDataTreeConstructor
+                = new TreeConstructor<>(LinkableDataType.nodeComparator());
+        linkableDataTreeConstructor.add(new Node<>(new LinkableData("a", "b")));
+        linkableDataTreeConstructor.add(new Node<>(new LinkableData("b", "a")));
+        linkableDataTreeConstructor.treeList();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMoveUnderDescendant() {
+        TreeConstructor<LinkableData> linkableDataTreeConstructor
+                = new TreeConstructor<>(LinkableDataType.nodeComparator());
+        linkableDataTreeConstructor.add(new Node<>(new LinkableData("a", "")));
+        linkableDataTreeConstructor.add(new Node<>(new LinkableData("b", "a")));
+        linkableDataTreeConstructor.move("a", "b");
+    }
+
+    @Test
+    public void testBuildWithCycle() {
+        List<LinkableData> twoCycleList = ImmutableList.of(
+                new LinkableData("root", ""),
+                new LinkableData("a", "b"),
+                new LinkableData("b", "a"));
+        List<LinkableData> selfParentList = ImmutableList.of(
+                new LinkableData("root", ""),
+                new LinkableData("a", "a"));
+        for (List<LinkableData> dataList : ImmutableList.of(twoCycleList, selfParentList)) {
+            for (int parallelism : new int[]{0, 1, 4}) {
+                try {
+                    if (0 == parallelism) {
+                        TreeConstructor.build(dataList);
+                    } else {
+                        TreeConstructor.build(dataList, parallelism);
+                    }
+                    Assert.fail("a cycle should fail the build");
+                } catch (RuntimeException e) {
+                    Assert.assertTrue(e.getMessage(), e.getMessage().contains("cycles(1)"));
+                }
+            }
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testBuildWithDuplicateId() {
+        TreeConstructor.build(ImmutableList.of(
+                new LinkableData("a", ""),
+                new LinkableData("a", "")));
+    }
+
+    static List<LinkableData> randomForest(int size, Random random) {
+        List<LinkableData> dataList = new ArrayList<>(size);
+        for (int index = 0; index < size; index++) {
+            String parentId = 0 == index || random.nextInt(10) == 0
+                    ? "" : String.valueOf(random.nextInt(index));
+            dataList.add(new LinkableData(String.valueOf(index), parentId));
+        }
+        Collections.shuffle(dataList, random);
+        return dataList;
+    }
+
+    /**
+     * @return an order dependent description of the forest
+     */
+    static List<String> ordered(List<? extends Node<? extends LinkableDataType>> rootList) {
+        return rootList.stream()
+                .map(root -> root.data().id()
+                        + ordered(root.children()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return an order independent description of the forest
+     */
+    static List<String> canonical(List<? extends Node<? extends LinkableDataType>> rootList) {
+        return rootList.stream()
+                .map(root -> root.data().id()
+                        + canonical(root.children()))
+                .sorted()
+                .collect(Collectors.toList());
+    }
 }
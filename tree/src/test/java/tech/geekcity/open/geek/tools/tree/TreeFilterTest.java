@@ -0,0 +1,108 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+/**
+ * @author ben.wangz
+ */
+public class TreeFilterTest {
+    @Test
+    public void test() {
+        List<Node<TreeConstructorTest.LinkableData>> rootList = TreeConstructor.build(ImmutableList.of(
+                new TreeConstructorTest.LinkableData("a", ""),
+                new TreeConstructorTest.LinkableData("b", "a"),
+                new TreeConstructorTest.LinkableData("c", "b"),
+                new TreeConstructorTest.LinkableData("x", "c"),
+                new TreeConstructorTest.LinkableData("d", "b"),
+                new TreeConstructorTest.LinkableData("e", "a"),
+                new TreeConstructorTest.LinkableData("f", ""),
+                new TreeConstructorTest.LinkableData("x2", "")));
+        Predicate<TreeConstructorTest.LinkableData> predicate
+                = data -> data.id().startsWith("x") || "b".equals(data.id());
+        Assert.assertEquals(
+                ImmutableList.of("a[b[c[x[]]]]", "x2[]"),
+                TreeConstructorTest.canonical(TreeFilter.filter(rootList, predicate, false)));
+        Assert.assertEquals(
+                ImmutableList.of("a[b[c[x[]], d[]]]", "x2[]"),
+                TreeConstructorTest.canonical(TreeFilter.filter(rootList, predicate, true)));
+        Assert.assertEquals(
+                ImmutableList.of("a[b[c[x[]], d[]]]", "x2[]"),
+                TreeConstructorTest.canonical(TreeFilter.filter(rootList, predicate, true, 4)));
+        Assert.assertTrue(TreeFilter.filter(rootList, data -> false, true, 4).isEmpty());
+        // the payloads are shared and the source is untouched
+        List<Node<TreeConstructorTest.LinkableData>> filteredList = TreeFilter.filter(rootList, predicate, false);
+        Assert.assertSame(rootList.get(0).data(), filteredList.get(0).data());
+        Assert.assertTrue(filteredList.get(0).root());
+        Assert.assertEquals(2, rootList.get(0).children().size());
+        Assert.assertEquals(rootList.get(0), rootList.get(0).children().get(0).parent());
+    }
+
+    @Test
+    public void testRandom() {
+        Random random = new Random(0);
+        List<Node<TreeConstructorTest.LinkableData>> rootList
+                = TreeConstructor.build(TreeConstructorTest.randomForest(100000, random));
+        for (int modulus : new int[]{7, 101, 5000}) {
+            Predicate<TreeConstructorTest.LinkableData> predicate
+                    = data -> Integer.parseInt(data.id()) % modulus == 0;
+            for (boolean keepDescendants : new boolean[]{false, true}) {
+                List<String> expected = TreeConstructorTest.canonical(naiveFilter(rootList, predicate, keepDescendants));
+                Assert.assertEquals(
+                        expected,
+                        TreeConstructorTest.canonical(TreeFilter.filter(rootList, predicate, keepDescendants)));
+                for (int parallelism : new int[]{1, 4}) {
+                    List<Node<TreeConstructorTest.LinkableData>> filteredList
+                            = TreeFilter.filter(rootList, predicate, keepDescendants, parallelism);
+                    Assert.assertEquals(expected, TreeConstructorTest.canonical(filteredList));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDeepChain() {
+        List<TreeConstructorTest.LinkableData> dataList = new ArrayList<>();
+        for (int index = 0; index < 100000; index++) {
+            dataList.add(new TreeConstructorTest.LinkableData(
+                    String.valueOf(index), 0 == index ? "" : String.valueOf(index - 1)));
+        }
+        List<Node<TreeConstructorTest.LinkableData>> rootList = TreeConstructor.build(dataList);
+        for (boolean keepDescendants : new boolean[]{false, true}) {
+            List<Node<TreeConstructorTest.LinkableData>> filteredList = TreeFilter.filter(
+                    rootList, data -> "50000".equals(data.id()), keepDescendants, 4);
+            Assert.assertEquals(1, filteredList.size());
+            int[] count = {0};
+            filteredList.get(0).preOrderIterator().forEachRemaining(node -> count[0]++);
+            Assert.assertEquals(keepDescendants ? 100000 : 50001, count[0]);
+        }
+    }
+
+    /**
+     * recursive reference, only for trees shallow enough
+     */
+    private static List<Node<TreeConstructorTest.LinkableData>> naiveFilter(
+            List<Node<TreeConstructorTest.LinkableData>> nodeList,
+            Predicate<TreeConstructorTest.LinkableData> predicate,
+            boolean keepDescendants) {
+        List<Node<TreeConstructorTest.LinkableData>> filteredList = new ArrayList<>();
+        for (Node<TreeConstructorTest.LinkableData> node : nodeList) {
+            boolean matched = predicate.test(node.data());
+            List<Node<TreeConstructorTest.LinkableData>> filteredChildList = matched && keepDescendants
+                    ? naiveFilter(node.children(), data -> true, true)
+                    : naiveFilter(node.children(), predicate, keepDescendants);
+            if (matched || !filteredChildList.isEmpty()) {
+                Node<TreeConstructorTest.LinkableData> filtered = new Node<>(node.data());
+                filteredChildList.forEach(filtered::addChild);
+                filteredList.add(filtered);
+            }
+        }
+        return filteredList;
+    }
+}
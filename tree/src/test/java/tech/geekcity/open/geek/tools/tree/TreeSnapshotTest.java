@@ -0,0 +1,98 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author ben.wangz
+ */
+public class TreeSnapshotTest {
+    private TreeSnapshot<String> treeSnapshot;
+
+    @Before
+    public void before() throws Exception {
+        Node<String> root = new Node<>("h")
+                .addChild(
+                        new Node<>("d")
+                                .addChild(new Node<>("a"))
+                                .addChild(new Node<>("b"))
+                                .addChild(new Node<>("c")))
+                .addChild(
+                        new Node<>("e"))
+                .addChild(
+                        new Node("g")
+                                .addChild(new Node("f")));
+        treeSnapshot = TreeSnapshot.freeze(ImmutableList.of(root, new Node<>("x")));
+    }
+
+    @Test
+    public void test() {
+        Assert.assertEquals(9, treeSnapshot.size());
+        Assert.assertEquals(2, treeSnapshot.rootCount());
+        Assert.assertEquals(ImmutableList.of("h", "d", "a", "b", "c", "e", "g", "f", "x"), preOrder(treeSnapshot));
+        Assert.assertEquals(ImmutableList.of("a", "b", "c", "d", "e", "f", "g", "h", "x"), postOrder(treeSnapshot));
+        Assert.assertEquals(ImmutableList.of("h", "d", "e", "g", "a", "b", "c", "f", "x"), breadthFirst(treeSnapshot));
+
+        int d = 1;
+        Assert.assertEquals("d", treeSnapshot.data(d));
+        Assert.assertEquals(0, treeSnapshot.parent(d));
+        Assert.assertEquals(TreeSnapshot.NONE, treeSnapshot.parent(0));
+        Assert.assertEquals(1, treeSnapshot.depth(d));
+        Assert.assertEquals(2, treeSnapshot.depth(7));
+        Assert.assertEquals(4, treeSnapshot.subtreeSize(d));
+        Assert.assertEquals(2, treeSnapshot.firstChild(d));
+        Assert.assertEquals(5, treeSnapshot.nextSibling(d));
+        Assert.assertEquals(TreeSnapshot.NONE, treeSnapshot.nextSibling(4));
+        Assert.assertEquals(TreeSnapshot.NONE, treeSnapshot.firstChild(4));
+        Assert.assertEquals(8, treeSnapshot.nextSibling(0));
+        Assert.assertTrue(treeSnapshot.isAncestor(0, 7));
+        Assert.assertTrue(treeSnapshot.isAncestor(d, 4));
+        Assert.assertFalse(treeSnapshot.isAncestor(d, 5));
+        Assert.assertFalse(treeSnapshot.isAncestor(d, d));
+        Assert.assertFalse(treeSnapshot.isAncestor(0, 8));
+    }
+
+    @Test
+    public void testDeepChain() {
+        int size = 100000;
+        Node<Integer> root = new Node<>(0);
+        Node<Integer> current = root;
+        for (int index = 1; index < size; index++) {
+            Node<Integer> child = new Node<>(index);
+            current.addChild(child);
+            current = child;
+        }
+        TreeSnapshot<Integer> chainSnapshot = TreeSnapshot.freeze(ImmutableList.of(root));
+        Assert.assertEquals(size, chainSnapshot.size());
+        Assert.assertEquals(size - 1, chainSnapshot.depth(size - 1));
+        int[] expected = {size - 1};
+        chainSnapshot.forEachPostOrder(index -> {
+            Assert.assertEquals(expected[0]--, (int) chainSnapshot.data(index));
+        });
+        Assert.assertEquals(-1, expected[0]);
+    }
+
+    private static <DataType extends Serializable> List<DataType> preOrder(TreeSnapshot<DataType> snapshot) {
+        List<DataType> dataList = new ArrayList<>();
+        snapshot.forEachPreOrder(index -> dataList.add(snapshot.data(index)));
+        return dataList;
+    }
+
+    private static <DataType extends Serializable> List<DataType> postOrder(TreeSnapshot<DataType> snapshot) {
+        List<DataType> dataList = new ArrayList<>();
+        snapshot.forEachPostOrder(index -> dataList.add(snapshot.data(index)));
+        return dataList;
+    }
+
+    private static <DataType extends Serializable> List<DataType> breadthFirst(TreeSnapshot<DataType> snapshot) {
+        List<DataType> dataList = new ArrayList<>();
+        snapshot.forEachBreadthFirst(index -> dataList.add(snapshot.data(index)));
+        return dataList;
+    }
+}
@@ -0,0 +1,108 @@
+package tech.geekcity.open.geek.tools.tree;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * @author ben.wangz
+ */
+public class TreeValidationTest {
+    private static final List<TreeConstructorTest.LinkableData> DATA_LIST = ImmutableList.of(
+            new TreeConstructorTest.LinkableData("a", ""),
+            new TreeConstructorTest.LinkableData("b", "a"),
+            // cycle c -> d -> e -> c, with f hanging from it
+            new TreeConstructorTest.LinkableData("d", "e"),
+            new TreeConstructorTest.LinkableData("c", "d"),
+            new TreeConstructorTest.LinkableData("e", "c"),
+            new TreeConstructorTest.LinkableData("f", "e"),
+            // self cycle
+            new TreeConstructorTest.LinkableData("g", "g"),
+            // orphans
+            new TreeConstructorTest.LinkableData("h", "x"),
+            new TreeConstructorTest.LinkableData("i", "h"),
+            new TreeConstructorTest.LinkableData("j", "y"));
+
+    @Test
+    public void test() {
+        AtomicReference<TreeValidation.Report> report = new AtomicReference<>();
+        TreeValidation<TreeConstructorTest.LinkableData> treeValidation = new TreeValidation<>(
+                TreeValidation.CyclePolicy.BREAK,
+                TreeValidation.OrphanPolicy.ATTACH_TO_SYNTHETIC_ROOT,
+                new TreeConstructorTest.LinkableData("synthetic", ""),
+                report::set);
+        List<String> expected = ImmutableList.of("a[b[]]", "d[c[e[f[]]]]", "g[]", "synthetic[h[i[]], j[]]");
+        Assert.assertEquals(expected, TreeConstructorTest.ordered(TreeConstructor.build(DATA_LIST, treeValidation)));
+        Assert.assertEquals(
+                ImmutableList.of(ImmutableList.of("d", "e", "c"), ImmutableList.of("g")),
+                report.get().cycleList());
+        Assert.assertEquals(ImmutableList.of("h", "j"), report.get().orphanIdList());
+        Assert.assertFalse(report.get().valid());
+        Assert.assertEquals("cycles(2): [[d -> e -> c], [g]], orphans(2): [h, j]", report.get().toString());
+        IntStream.of(1, 2, 4).forEach(parallelism -> Assert.assertEquals(
+                expected,
+                TreeConstructorTest.ordered(TreeConstructor.build(DATA_LIST, parallelism, treeValidation))));
+
+        Assert.assertEquals(
+                ImmutableList.of("a[b[]]", "d[c[e[f[]]]]", "g[]", "h[i[]]", "j[]"),
+                TreeConstructorTest.ordered(TreeConstructor.build(DATA_LIST, new TreeValidation<>(
+                        TreeValidation.CyclePolicy.BREAK, TreeValidation.OrphanPolicy.KEEP_AS_ROOT))));
+    }
+
+    @Test
+    public void testValid() {
+        List<TreeConstructorTest.LinkableData> dataList = TreeConstructorTest.randomForest(10000, new Random(0));
+        AtomicReference<TreeValidation.Report> report = new AtomicReference<>();
+        Assert.assertEquals(
+                TreeConstructorTest.ordered(TreeConstructor.build(dataList)),
+                TreeConstructorTest.ordered(TreeConstructor.build(dataList, new TreeValidation<>(
+                        TreeValidation.CyclePolicy.FAIL,
+                        TreeValidation.OrphanPolicy.FAIL,
+                        null,
+                        report::set))));
+        Assert.assertTrue(report.get().valid());
+    }
+
+    @Test
+    public void testFail() {
+        // a large cycle, whose report is still short
+        List<TreeConstructorTest.LinkableData> dataList = IntStream.range(0, 100000)
+                .mapToObj(index -> new TreeConstructorTest.LinkableData(
+                        String.valueOf(index), String.valueOf((index + 1) % 100000)))
+                .collect(Collectors.toCollection(ArrayList::new));
+        dataList.add(new TreeConstructorTest.LinkableData("orphan", "missing"));
+        try {
+            TreeConstructor.build(dataList, new TreeValidation<>(
+                    TreeValidation.CyclePolicy.FAIL, TreeValidation.OrphanPolicy.KEEP_AS_ROOT));
+            Assert.fail();
+        } catch (RuntimeException e) {
+            Assert.assertEquals(
+                    "invalid parent links found, cycles(1): [[0 -> 1 -> 2 -> 3 -> 4 -> 5 -> 6 -> 7 -> 8 -> 9 -> "
+                            + "... 99990 more]], orphans(1): [orphan]",
+                    e.getMessage());
+        }
+        try {
+            TreeConstructor.build(dataList, new TreeValidation<>(
+                    TreeValidation.CyclePolicy.BREAK, TreeValidation.OrphanPolicy.FAIL));
+            Assert.fail();
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage().endsWith("orphans(1): [orphan]"));
+        }
+        Assert.assertEquals(2, TreeConstructor.build(dataList, new TreeValidation<>(
+                TreeValidation.CyclePolicy.BREAK, TreeValidation.OrphanPolicy.KEEP_AS_ROOT)).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSyntheticRootRequired() {
+        new TreeValidation<TreeConstructorTest.LinkableData>(
+                TreeValidation.CyclePolicy.BREAK, TreeValidation.OrphanPolicy.ATTACH_TO_SYNTHETIC_ROOT, null, report -> {
+        });
+    }
+}